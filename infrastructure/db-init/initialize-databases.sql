@@ -1,47 +1,125 @@
+-- Schema version 3: the three Statistics tables share the same column types,
+-- are range-partitioned by month on done_at and indexed on (type, description, done_at).
+-- Their ids come from one sequence per table, incremented by 50 for the pooled-lo optimizer of Hibernate.
+-- To upgrade an existing database, run the db-migration scripts from its version instead.
+
 DROP TABLE IF EXISTS Statistics_Quarkus;
 DROP TABLE IF EXISTS Statistics_Micronaut;
 DROP TABLE IF EXISTS Statistics_Springboot;
 DROP SEQUENCE IF EXISTS hibernate_sequence;
 DROP SEQUENCE IF EXISTS statistics_quarkus_seq;
+DROP SEQUENCE IF EXISTS statistics_micronaut_seq;
 DROP SEQUENCE IF EXISTS statistics_springboot_seq;
 
-create sequence hibernate_sequence start 1 increment 1;
 create sequence statistics_quarkus_seq start 1 increment 50;
+create sequence statistics_micronaut_seq start 1 increment 50;
 create sequence statistics_springboot_seq start 1 increment 50;
 
+-- Creates the monthly partitions of a Statistics table covering [first_month, first_month + months).
+-- The rows of a new month that are already in the default partition move to its partition: the default partition is
+-- detached meanwhile, as the partition can't be created while the default one holds rows of its range.
+-- Detaching and attaching lock the table, so writes wait until the rows are moved.
+create or replace function create_statistics_partitions(parent text, first_month date, months int)
+returns void as $$
+declare
+    month_start date;
+    month_end date;
+    partition_name text;
+    default_name text := parent || '_default';
+    default_rows boolean;
+begin
+    for i in 0..months - 1 loop
+        month_start := date_trunc('month', first_month)::date + make_interval(months => i);
+        month_end := month_start + interval '1 month';
+        partition_name := parent || '_' || to_char(month_start, 'YYYY_MM');
+        if to_regclass(quote_ident(partition_name)) is not null then
+            continue;
+        end if;
+        default_rows := false;
+        if to_regclass(quote_ident(default_name)) is not null then
+            execute format('select exists (select from %I where done_at >= %L and done_at < %L)',
+                           default_name, month_start, month_end) into default_rows;
+        end if;
+        if default_rows then
+            execute format('alter table %I detach partition %I', parent, default_name);
+        end if;
+        execute format('create table %I partition of %I for values from (%L) to (%L)',
+                       partition_name, parent, month_start, month_end);
+        if default_rows then
+            execute format('with moved as (delete from %I where done_at >= %L and done_at < %L returning *)
+                            insert into %I select * from moved',
+                           default_name, month_start, month_end, partition_name);
+            execute format('alter table %I attach partition %I default', parent, default_name);
+        end if;
+    end loop;
+end;
+$$ language plpgsql;
+
+-- Drops the monthly partitions of a Statistics table that only hold rows older than the given month.
+create or replace function drop_statistics_partitions(parent text, before_month date)
+returns void as $$
+declare
+    partition_name text;
+begin
+    for partition_name in
+        select child.relname
+        from pg_inherits
+        join pg_class child on child.oid = pg_inherits.inhrelid
+        join pg_class parent_table on parent_table.oid = pg_inherits.inhparent
+        where parent_table.relname = lower(parent)
+          and child.relname ~ '_\d{4}_\d{2}$'
+          and to_date(right(child.relname, 7), 'YYYY_MM') < date_trunc('month', before_month)
+    loop
+        execute format('drop table %I', partition_name);
+    end loop;
+end;
+$$ language plpgsql;
+
 create table Statistics_Quarkus
 (
-    id          int8 not null,
+    id          int8        not null,
     description varchar(255),
-    done_at     timestamp,
-    duration    numeric(21,0),
+    done_at     timestamptz not null,
+    duration    int8,
     framework   smallint,
     parameter   varchar(255),
     type        smallint,
-    primary key (id)
-);
+    primary key (id, done_at)
+) partition by range (done_at);
 
 create table Statistics_Micronaut
 (
-    id          int8 not null,
+    id          int8        not null,
     description varchar(255),
-    done_at     timestamp,
+    done_at     timestamptz not null,
     duration    int8,
-    framework   int4,
+    framework   smallint,
     parameter   varchar(255),
-    type        int4,
-    primary key (id)
-);
-
+    type        smallint,
+    primary key (id, done_at)
+) partition by range (done_at);
 
 create table Statistics_Springboot
 (
-    id          int8 not null,
+    id          int8        not null,
     description varchar(255),
-    done_at     timestamp,
-    duration    numeric(21,0),
-    framework   int4,
+    done_at     timestamptz not null,
+    duration    int8,
+    framework   smallint,
     parameter   varchar(255),
-    type        int4,
-    primary key (id)
-);
+    type        smallint,
+    primary key (id, done_at)
+) partition by range (done_at);
+
+create index statistics_quarkus_type_description_done_at on Statistics_Quarkus (type, description, done_at);
+create index statistics_micronaut_type_description_done_at on Statistics_Micronaut (type, description, done_at);
+create index statistics_springboot_type_description_done_at on Statistics_Springboot (type, description, done_at);
+
+-- Rows outside of the monthly partitions land in the default partition, so inserts never fail.
+create table statistics_quarkus_default partition of Statistics_Quarkus default;
+create table statistics_micronaut_default partition of Statistics_Micronaut default;
+create table statistics_springboot_default partition of Statistics_Springboot default;
+
+select create_statistics_partitions('statistics_quarkus', (current_date - interval '1 month')::date, 14);
+select create_statistics_partitions('statistics_micronaut', (current_date - interval '1 month')::date, 14);
+select create_statistics_partitions('statistics_springboot', (current_date - interval '1 month')::date, 14);
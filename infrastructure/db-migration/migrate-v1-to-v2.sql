@@ -0,0 +1,111 @@
+-- Migrates the version 1 Statistics tables (primary key only, per-framework column types)
+-- to the version 2 schema of db-init/initialize-databases.sql.
+-- The version 1 tables are kept as Statistics_*_v1 until you drop them at the end of this script.
+
+begin;
+
+-- Creates the monthly partitions of a Statistics table covering [first_month, first_month + months).
+-- The rows of a new month that are already in the default partition move to its partition: the default partition is
+-- detached meanwhile, as the partition can't be created while the default one holds rows of its range.
+-- Detaching and attaching lock the table, so writes wait until the rows are moved.
+create or replace function create_statistics_partitions(parent text, first_month date, months int)
+returns void as $$
+declare
+    month_start date;
+    month_end date;
+    partition_name text;
+    default_name text := parent || '_default';
+    default_rows boolean;
+begin
+    for i in 0..months - 1 loop
+        month_start := date_trunc('month', first_month)::date + make_interval(months => i);
+        month_end := month_start + interval '1 month';
+        partition_name := parent || '_' || to_char(month_start, 'YYYY_MM');
+        if to_regclass(quote_ident(partition_name)) is not null then
+            continue;
+        end if;
+        default_rows := false;
+        if to_regclass(quote_ident(default_name)) is not null then
+            execute format('select exists (select from %I where done_at >= %L and done_at < %L)',
+                           default_name, month_start, month_end) into default_rows;
+        end if;
+        if default_rows then
+            execute format('alter table %I detach partition %I', parent, default_name);
+        end if;
+        execute format('create table %I partition of %I for values from (%L) to (%L)',
+                       partition_name, parent, month_start, month_end);
+        if default_rows then
+            execute format('with moved as (delete from %I where done_at >= %L and done_at < %L returning *)
+                            insert into %I select * from moved',
+                           default_name, month_start, month_end, partition_name);
+            execute format('alter table %I attach partition %I default', parent, default_name);
+        end if;
+    end loop;
+end;
+$$ language plpgsql;
+
+create or replace function drop_statistics_partitions(parent text, before_month date)
+returns void as $$
+declare
+    partition_name text;
+begin
+    for partition_name in
+        select child.relname
+        from pg_inherits
+        join pg_class child on child.oid = pg_inherits.inhrelid
+        join pg_class parent_table on parent_table.oid = pg_inherits.inhparent
+        where parent_table.relname = lower(parent)
+          and child.relname ~ '_\d{4}_\d{2}$'
+          and to_date(right(child.relname, 7), 'YYYY_MM') < date_trunc('month', before_month)
+    loop
+        execute format('drop table %I', partition_name);
+    end loop;
+end;
+$$ language plpgsql;
+
+-- Renames a version 1 table, creates its partitioned replacement covering the existing rows
+-- plus the next 12 months, and copies the rows with the version 2 column types.
+-- Version 1 done_at values are timestamps without time zone written in UTC.
+create or replace function migrate_statistics_table(name text)
+returns void as $$
+declare
+    first_month date;
+    months int;
+begin
+    execute format('alter table %I rename to %I', name, name || '_v1');
+    execute format('alter index if exists %I rename to %I', name || '_pkey', name || '_v1_pkey');
+    execute format('create table %I (
+                        id          int8        not null,
+                        description varchar(255),
+                        done_at     timestamptz not null,
+                        duration    int8,
+                        framework   smallint,
+                        parameter   varchar(255),
+                        type        smallint,
+                        primary key (id, done_at)
+                    ) partition by range (done_at)', name);
+    execute format('create index %I on %I (type, description, done_at)', name || '_type_description_done_at', name);
+    execute format('create table %I partition of %I default', name || '_default', name);
+
+    execute format('select coalesce(min(done_at), current_date)::date from %I', name || '_v1') into first_month;
+    months := (extract(year from age(current_date, first_month)) * 12
+               + extract(month from age(current_date, first_month)))::int + 13;
+    perform create_statistics_partitions(name, first_month, months);
+
+    execute format('insert into %I (id, description, done_at, duration, framework, parameter, type)
+                    select id, description, coalesce(done_at, timestamp ''1970-01-01'') at time zone ''UTC'',
+                           duration::int8, framework::smallint, parameter, type::smallint
+                    from %I', name, name || '_v1');
+end;
+$$ language plpgsql;
+
+select migrate_statistics_table('statistics_quarkus');
+select migrate_statistics_table('statistics_micronaut');
+select migrate_statistics_table('statistics_springboot');
+
+drop function migrate_statistics_table(text);
+
+commit;
+
+-- Once the row counts of the new tables match, drop the version 1 tables:
+-- drop table statistics_quarkus_v1, statistics_micronaut_v1, statistics_springboot_v1;
@@ -0,0 +1,61 @@
+-- Migrates a version 2 database to the version 3 schema of db-init/initialize-databases.sql:
+-- Micronaut takes its ids from statistics_micronaut_seq, by blocks of 50, instead of hibernate_sequence, one by one.
+-- Stop the Micronaut instances before running it, and only start the new version afterwards.
+-- Spring Boot switches from the pooled to the pooled-lo optimizer on the same sequence, which needs no change:
+-- the next block starts after the last id the pooled optimizer could have used.
+-- It also replaces create_statistics_partitions, which now moves the rows of the new months out of the default partition.
+
+begin;
+
+-- Creates the monthly partitions of a Statistics table covering [first_month, first_month + months).
+-- The rows of a new month that are already in the default partition move to its partition: the default partition is
+-- detached meanwhile, as the partition can't be created while the default one holds rows of its range.
+-- Detaching and attaching lock the table, so writes wait until the rows are moved.
+create or replace function create_statistics_partitions(parent text, first_month date, months int)
+returns void as $$
+declare
+    month_start date;
+    month_end date;
+    partition_name text;
+    default_name text := parent || '_default';
+    default_rows boolean;
+begin
+    for i in 0..months - 1 loop
+        month_start := date_trunc('month', first_month)::date + make_interval(months => i);
+        month_end := month_start + interval '1 month';
+        partition_name := parent || '_' || to_char(month_start, 'YYYY_MM');
+        if to_regclass(quote_ident(partition_name)) is not null then
+            continue;
+        end if;
+        default_rows := false;
+        if to_regclass(quote_ident(default_name)) is not null then
+            execute format('select exists (select from %I where done_at >= %L and done_at < %L)',
+                           default_name, month_start, month_end) into default_rows;
+        end if;
+        if default_rows then
+            execute format('alter table %I detach partition %I', parent, default_name);
+        end if;
+        execute format('create table %I partition of %I for values from (%L) to (%L)',
+                       partition_name, parent, month_start, month_end);
+        if default_rows then
+            execute format('with moved as (delete from %I where done_at >= %L and done_at < %L returning *)
+                            insert into %I select * from moved',
+                           default_name, month_start, month_end, partition_name);
+            execute format('alter table %I attach partition %I default', parent, default_name);
+        end if;
+    end loop;
+end;
+$$ language plpgsql;
+
+create sequence if not exists statistics_micronaut_seq start 1 increment 50;
+
+-- With pooled-lo, the next value is the first id of the next block
+select setval('statistics_micronaut_seq',
+              greatest((select coalesce(max(id), 0) from Statistics_Micronaut),
+                       (select last_value from hibernate_sequence)) + 1,
+              false);
+
+commit;
+
+-- Once no Micronaut instance of version 2 is left:
+-- drop sequence hibernate_sequence;
@@ -1,10 +1,14 @@
 package io.containerapps.javaruntime.workshop.micronaut;
 
+import io.micronaut.core.annotation.TypeHint;
 import io.micronaut.runtime.Micronaut;
 
+// Hibernate sets the fields of the statistics and Jackson reads them by reflection, also in a native image
+@TypeHint(value = {Statistics.class, Type.class, Framework.class},
+    accessType = {TypeHint.AccessType.ALL_DECLARED_CONSTRUCTORS, TypeHint.AccessType.ALL_DECLARED_FIELDS, TypeHint.AccessType.ALL_PUBLIC_METHODS})
 public class Application {
 
     public static void main(String[] args) {
         Micronaut.run(Application.class, args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The ways the memory workload can eat its bites, each one returning the number of bytes it filled.
+ */
+enum MemoryStrategy {
+
+    /**
+     * 8 KiB arrays in a HashMap keyed by boxed Integer, filled byte by byte.
+     */
+    HASHMAP {
+        @Override
+        long eat(int bites) {
+            HashMap hunger = new HashMap<>();
+            for (int i = 0; i < bites * 1024 * 1024; i += 8192) {
+                byte[] bytes = new byte[8192];
+                hunger.put(i, bytes);
+                for (int j = 0; j < 8192; j++) {
+                    bytes[j] = '0';
+                }
+            }
+            return (long) hunger.size() * CHUNK_SIZE;
+        }
+    },
+
+    /**
+     * 8 KiB arrays in a plain array indexed by chunk number, filled with {@link Arrays#fill}.
+     */
+    ARRAY {
+        @Override
+        long eat(int bites) {
+            byte[][] hunger = new byte[chunks(bites)][];
+            for (int i = 0; i < hunger.length; i++) {
+                hunger[i] = new byte[CHUNK_SIZE];
+                Arrays.fill(hunger[i], (byte) '0');
+            }
+            return (long) hunger.length * CHUNK_SIZE;
+        }
+    },
+
+    /**
+     * 8 KiB direct buffers, off the heap, filled with bulk puts.
+     */
+    DIRECT {
+        @Override
+        long eat(int bites) {
+            ByteBuffer[] hunger = new ByteBuffer[chunks(bites)];
+            for (int i = 0; i < hunger.length; i++) {
+                hunger[i] = ByteBuffer.allocateDirect(CHUNK_SIZE).put(FILLING);
+            }
+            return (long) hunger.length * CHUNK_SIZE;
+        }
+    },
+
+    /**
+     * A memory-mapped scratch file, deleted once filled.
+     */
+    MAPPED {
+        @Override
+        long eat(int bites) {
+            try {
+                Path scratch = Files.createTempFile("memory-", ".scratch");
+                try (FileChannel channel = FileChannel.open(scratch, READ, WRITE, DELETE_ON_CLOSE)) {
+                    MappedByteBuffer hunger = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) chunks(bites) * CHUNK_SIZE);
+                    while (hunger.hasRemaining()) {
+                        hunger.put(FILLING);
+                    }
+                    return hunger.position();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final byte[] FILLING = new byte[CHUNK_SIZE];
+
+    static {
+        Arrays.fill(FILLING, (byte) '0');
+    }
+
+    abstract long eat(int bites);
+
+    static MemoryStrategy of(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    private static int chunks(int bites) {
+        return bites * 1024 * 1024 / CHUNK_SIZE;
+    }
+}
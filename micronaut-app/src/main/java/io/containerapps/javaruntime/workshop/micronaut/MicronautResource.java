@@ -1,30 +1,98 @@
 // tag::adocHeader[]
 package io.containerapps.javaruntime.workshop.micronaut;
 
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.data.model.Pageable;
+import io.micronaut.data.model.Sort;
+import io.micronaut.http.HttpHeaders;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
 import io.micronaut.http.MediaType;
+import io.micronaut.http.MutableHttpResponse;
+import io.micronaut.http.annotation.Body;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Header;
+import io.micronaut.http.annotation.PathVariable;
+import io.micronaut.http.annotation.Post;
 import io.micronaut.http.annotation.QueryValue;
+import io.micronaut.http.exceptions.HttpStatusException;
+import io.micronaut.json.JsonMapper;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.System.Logger;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
-import static java.lang.System.Logger.Level.INFO;
 import static java.lang.invoke.MethodHandles.lookup;
 
 @Controller("/micronaut")
 public class MicronautResource {
 
     private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 10000;
+    private static final Set<String> BUCKETS = Set.of("minute", "hour", "day");
+    private static final String CPU_DONE = "Micronaut: CPU consumption is done with ";
+    private static final String MEMORY_DONE = "Micronaut: Memory consumption is done with ";
+    private static final String WORKLOAD_DONE = "Micronaut: Workload ";
+    private static final int MAX_WORKLOAD_SIZE = 10000;
+    private static final String PERSISTED = " The result is persisted in the database.";
+    private static final String QUEUED = " The result is queued to be persisted in the database.";
+    private static final int STREAM_CHUNK_SIZE = 500;
+    private static final RequestLog.Format HELLO_LOG = RequestLog.Format.of("hello", "Micronaut: hello");
+    private static final RequestLog.Format CPU_LOG = RequestLog.Format.of("cpu", "Micronaut: cpu: {iterations} {db} with desc {desc} using {kernel} over {parallelism}");
+    private static final RequestLog.Format MEMORY_LOG = RequestLog.Format.of("memory", "Micronaut: memory: {bites} {db} with desc {desc} using {strategy}");
+    private static final RequestLog.Format WORKLOAD_LOG = RequestLog.Format.of("workload", "Micronaut: workload: {name} {size} {db} with desc {desc}");
+    private static final RequestLog.Format STATS_LOG = RequestLog.Format.of("stats", "Micronaut: retrieving statistics after {after} limited to {limit}");
+    private static final RequestLog.Format SUMMARY_LOG = RequestLog.Format.of("summary", "Micronaut: summarizing statistics by {bucket}");
+    private static final RequestLog.Format STREAM_LOG = RequestLog.Format.of("stream", "Micronaut: streaming statistics after {after} as {format}");
+    private static final RequestLog.Format BATCH_LOG = RequestLog.Format.of("batch", "Micronaut: loading statistics as {format}");
 
     private final StatisticsRepository repository;
+    private final StatisticsWriter writer;
+    private final StatisticsCache cache;
+    private final StatisticsStore store;
+    private final StatisticsLoader loader;
+    private final JsonMapper jsonMapper;
+    private final WorkloadMetrics metrics;
+    private final TimingHistograms histograms;
+    private final ConcurrencyLimiter limiter;
+    private final RequestLog requestLog;
+    private final WorkloadRegistry workloads;
 
-    public MicronautResource(StatisticsRepository statisticsRepository) {
+    public MicronautResource(StatisticsRepository statisticsRepository, StatisticsWriter statisticsWriter, StatisticsCache statisticsCache, StatisticsStore statisticsStore,
+                             StatisticsLoader statisticsLoader, JsonMapper jsonMapper, WorkloadMetrics workloadMetrics, TimingHistograms timingHistograms,
+                             ConcurrencyLimiter concurrencyLimiter, RequestLog requestLog, WorkloadRegistry workloadRegistry) {
         this.repository = statisticsRepository;
+        this.writer = statisticsWriter;
+        this.cache = statisticsCache;
+        this.store = statisticsStore;
+        this.loader = statisticsLoader;
+        this.jsonMapper = jsonMapper;
+        this.metrics = workloadMetrics;
+        this.histograms = timingHistograms;
+        this.limiter = concurrencyLimiter;
+        this.requestLog = requestLog;
+        this.workloads = workloadRegistry;
     }
 // end::adocHeader[]
 
@@ -37,8 +105,10 @@ public class MicronautResource {
 // tag::adocMethodHello[]
     @Get(produces = MediaType.TEXT_PLAIN)
     public String hello() {
-        LOGGER.log(INFO, "Micronaut: hello");
-        return "Micronaut: hello";
+        if (requestLog.sample(LOGGER, "hello")) {
+            requestLog.log(LOGGER, HELLO_LOG);
+        }
+        return metrics.record("hello", false, WorkloadMetrics.NO_SIZE, () -> "Micronaut: hello");
     }
 // end::adocMethodHello[]
 
@@ -48,48 +118,72 @@ public class MicronautResource {
      * {@code curl 'localhost:8702/micronaut/cpu?iterations=10'}
      * {@code curl 'localhost:8702/micronaut/cpu?iterations=10&db=true'}
      * {@code curl 'localhost:8702/micronaut/cpu?iterations=10&db=true&desc=java17'}
+     * {@code curl 'localhost:8702/micronaut/cpu?iterations=10000&kernel=hash&parallelism=4'}
      *
-     * @param iterations the number of iterations to run (times 20,000).
+     * @param iterations  the number of iterations to run (times 20,000).
+     * @param kernel      what each iteration does: sleep (every 20,000 iterations), hash or sum.
+     * @param parallelism the number of slices the iterations are split in, forked in the common ForkJoinPool.
      * @return the result
      */
 // tag::adocMethodCPU[]
     @Get(uri = "/cpu", produces = MediaType.TEXT_PLAIN)
-    public String cpu(@QueryValue(value = "iterations", defaultValue = "10") Long iterations,
-                      @QueryValue(value = "db", defaultValue = "false") Boolean db,
-                      @QueryValue(value = "desc", defaultValue = "") String desc) {
-        LOGGER.log(INFO, "Micronaut: cpu: {0} {1} with desc {2}", iterations, db, desc);
+    @ExecuteOn(WorkloadExecutorFactory.WORKLOAD)
+    public Mono<HttpResponse<ByteBuf>> cpu(@QueryValue(value = "iterations", defaultValue = "10") Long iterations,
+                            @QueryValue(value = "db", defaultValue = "false") Boolean db,
+                            @QueryValue(value = "desc", defaultValue = "") String desc,
+                            @QueryValue(value = "kernel", defaultValue = "sleep") String kernel,
+                            @QueryValue(value = "parallelism", defaultValue = "1") Integer parallelism) {
+        if (requestLog.sample(LOGGER, "cpu")) {
+            requestLog.log(LOGGER, CPU_LOG, iterations, db, desc, kernel, parallelism);
+        }
+        CpuWorkload.Kernel cpuKernel;
+        try {
+            cpuKernel = CpuWorkload.Kernel.of(kernel);
+        } catch (IllegalArgumentException e) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "kernel must be one of " + Arrays.toString(CpuWorkload.Kernel.values()));
+        }
+        if (parallelism < 1 || parallelism > CpuWorkload.MAX_PARALLELISM) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "parallelism must be between 1 and " + CpuWorkload.MAX_PARALLELISM);
+        }
+        return releaseDiscarded(limiter.limitAsync(() -> metrics.recordAsync("cpu", db, iterations, () -> cpuWorkload(iterations, db, desc, cpuKernel, parallelism)), this::overloaded));
+    }
+
+    private Mono<HttpResponse<ByteBuf>> cpuWorkload(Long iterations, Boolean db, String desc, CpuWorkload.Kernel kernel, int parallelism) {
         Long iterationsDone = iterations;
+        boolean sequential = kernel == CpuWorkload.Kernel.SLEEP && parallelism == 1;
+        String kernelName = kernel.name().toLowerCase(Locale.ROOT);
 
-        Instant start = Instant.now();
+        RequestTimings timings = RequestTimings.start();
         if (iterations == null) {
             iterations = 20000L;
         } else {
             iterations *= 20000;
         }
-        while (iterations > 0) {
-            if (iterations % 20000 == 0) {
-                try {
-                    Thread.sleep(20);
-                } catch (InterruptedException ie) {
-                }
-            }
-            iterations--;
-        }
+        CpuWorkload.burn(iterations, kernel, parallelism);
+        long computeNanos = timings.end("compute");
 
+        Mono<StatisticsWriter.Outcome> written = Mono.just(StatisticsWriter.Outcome.NONE);
         if (db) {
             Statistics statistics = new Statistics();
             statistics.type = Type.CPU;
-            statistics.parameter = iterations.toString();
-            statistics.duration = Duration.between(start, Instant.now());
+            statistics.parameter = sequential ? iterationsDone.toString() : iterationsDone + ":" + kernelName + ":" + parallelism;
+            statistics.duration = Duration.ofNanos(computeNanos);
             statistics.description = desc;
-            repository.save(statistics);
+            written = writer.writeAsync(statistics);
         }
 
-        String msg = "Micronaut: CPU consumption is done with " + iterationsDone + " iterations in " + Duration.between(start, Instant.now()).getNano() + " nano-seconds.";
-        if (db) {
-            msg += " The result is persisted in the database.";
-        }
-        return msg;
+        return written.map(outcome -> {
+            if (db) {
+                timings.end(outcome.phase());
+            }
+            StringBuilder msg = new StringBuilder(192).append(CPU_DONE).append(iterationsDone).append(" iterations ");
+            if (!sequential) {
+                msg.append("using ").append(kernelName).append(" over ").append(parallelism).append(" slices ");
+            }
+            timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+            appendOutcome(msg, outcome);
+            return timed("cpu", msg, timings);
+        });
     }
 // end::adocMethodCPU[]
 
@@ -99,62 +193,337 @@ public class MicronautResource {
      * {@code curl 'localhost:8702/micronaut/memory?bites=10'}
      * {@code curl 'localhost:8702/micronaut/memory?bites=10&db=true'}
      * {@code curl 'localhost:8702/micronaut/memory?bites=10&db=true&desc=java17'}
+     * {@code curl 'localhost:8702/micronaut/memory?bites=10&strategy=direct'}
      *
-     * @param bites the number of megabytes to eat
+     * @param bites    the number of megabytes to eat
+     * @param strategy how to eat them: hashmap, array, direct or mapped.
      * @return the result.
      */
 // tag::adocMethodMemory[]
     @Get(uri = "/memory", produces = MediaType.TEXT_PLAIN)
-    public String memory(@QueryValue(value = "bites", defaultValue = "10") Integer bites,
-                         @QueryValue(value = "db", defaultValue = "false") Boolean db,
-                         @QueryValue(value = "desc", defaultValue = "") String desc) {
-        LOGGER.log(INFO, "Micronaut: memory: {0} {1} with desc {2}", bites, db, desc);
-
-        Instant start = Instant.now();
-        if (bites == null) {
-            bites = 1;
-        }
-        HashMap hunger = new HashMap<>();
-        for (int i = 0; i < bites * 1024 * 1024; i += 8192) {
-            byte[] bytes = new byte[8192];
-            hunger.put(i, bytes);
-            for (int j = 0; j < 8192; j++) {
-                bytes[j] = '0';
-            }
+    @ExecuteOn(WorkloadExecutorFactory.WORKLOAD)
+    public Mono<HttpResponse<ByteBuf>> memory(@QueryValue(value = "bites", defaultValue = "10") Integer bites,
+                               @QueryValue(value = "db", defaultValue = "false") Boolean db,
+                               @QueryValue(value = "desc", defaultValue = "") String desc,
+                               @QueryValue(value = "strategy", defaultValue = "hashmap") String strategy) {
+        if (requestLog.sample(LOGGER, "memory")) {
+            requestLog.log(LOGGER, MEMORY_LOG, bites, db, desc, strategy);
+        }
+        MemoryStrategy memoryStrategy;
+        try {
+            memoryStrategy = MemoryStrategy.of(strategy);
+        } catch (IllegalArgumentException e) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "strategy must be one of " + Arrays.toString(MemoryStrategy.values()));
         }
+        return releaseDiscarded(limiter.limitAsync(() -> metrics.recordAsync("memory", db, bites, () -> memoryWorkload(bites, db, desc, memoryStrategy)), this::overloaded));
+    }
+
+    private Mono<HttpResponse<ByteBuf>> memoryWorkload(Integer bites, Boolean db, String desc, MemoryStrategy strategy) {
+        RequestTimings timings = RequestTimings.start();
+        int eaten = bites == null ? 1 : bites;
+        AllocationMeter meter = AllocationMeter.start();
+        strategy.eat(eaten);
+        long allocationNanos = timings.end("allocation");
+        long allocatedBytes = meter.allocatedBytes();
+        long gcCount = meter.gcCount();
+        long gcMillis = meter.gcMillis();
 
+        Mono<StatisticsWriter.Outcome> written = Mono.just(StatisticsWriter.Outcome.NONE);
         if (db) {
             Statistics statistics = new Statistics();
             statistics.type = Type.MEMORY;
-            statistics.parameter = bites.toString();
-            statistics.duration = Duration.between(start, Instant.now());
+            statistics.parameter = strategy == MemoryStrategy.HASHMAP ? Integer.toString(eaten) : eaten + ":" + strategy.name().toLowerCase(Locale.ROOT);
+            statistics.duration = Duration.ofNanos(allocationNanos);
             statistics.description = desc;
-            repository.save(statistics);
+            written = writer.writeAsync(statistics);
+        }
+
+        return written.map(outcome -> {
+            if (db) {
+                timings.end(outcome.phase());
+            }
+            StringBuilder msg = new StringBuilder(256).append(MEMORY_DONE).append(eaten).append(" bites using ").append(strategy.name().toLowerCase(Locale.ROOT))
+                .append(" (").append(allocatedBytes).append(" bytes allocated on the heap, ").append(gcCount).append(" GCs for ").append(gcMillis).append(" ms) ");
+            timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+            appendOutcome(msg, outcome);
+            return timed("memory", msg, timings);
+        });
+    }
+// end::adocMethodMemory[]
+
+    /**
+     * Runs a workload shaped like a hot path of a real service: json, regex, sort, hash, gzip or file.
+     * {@code curl 'localhost:8702/micronaut/workload/json'}
+     * {@code curl 'localhost:8702/micronaut/workload/regex?size=100'}
+     * {@code curl 'localhost:8702/micronaut/workload/gzip?size=10&db=true&desc=java17'}
+     *
+     * @param name the name of the workload.
+     * @param size the number of units of work to run, see {@link Workloads} and {@link JsonWorkload}.
+     * @return the result.
+     */
+    @Get(uri = "/workload/{name}", produces = MediaType.TEXT_PLAIN)
+    @ExecuteOn(WorkloadExecutorFactory.WORKLOAD)
+    public Mono<HttpResponse<ByteBuf>> workload(@PathVariable("name") String name,
+                                 @QueryValue(value = "size", defaultValue = "10") Integer size,
+                                 @QueryValue(value = "db", defaultValue = "false") Boolean db,
+                                 @QueryValue(value = "desc", defaultValue = "") String desc) {
+        if (requestLog.sample(LOGGER, "workload")) {
+            requestLog.log(LOGGER, WORKLOAD_LOG, name, size, db, desc);
         }
+        Workload workload = workloads.find(name)
+            .orElseThrow(() -> new HttpStatusException(HttpStatus.NOT_FOUND, "workload must be one of " + workloads.names()));
+        if (size < 0 || size > MAX_WORKLOAD_SIZE) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "size must be between 0 and " + MAX_WORKLOAD_SIZE);
+        }
+        // Timed per workload, as workload/json, workload/regex...
+        String endpoint = "workload/" + workload.name().toLowerCase(Locale.ROOT);
+        return releaseDiscarded(limiter.limitAsync(() -> metrics.recordAsync(endpoint, db, size, () -> runWorkload(endpoint, workload, size, db, desc)), this::overloaded));
+    }
+
+    private Mono<HttpResponse<ByteBuf>> runWorkload(String endpoint, Workload workload, int size, Boolean db, String desc) {
+        RequestTimings timings = RequestTimings.start();
+        long checksum = workload.run(size);
+        long computeNanos = timings.end("compute");
 
-        String msg = "Micronaut: Memory consumption is done with " + bites + " bites in " + Duration.between(start, Instant.now()).getNano() + " nano-seconds.";
+        Mono<StatisticsWriter.Outcome> written = Mono.just(StatisticsWriter.Outcome.NONE);
         if (db) {
-            msg += " The result is persisted in the database.";
+            Statistics statistics = new Statistics();
+            statistics.type = workload.type();
+            statistics.parameter = Integer.toString(size);
+            statistics.duration = Duration.ofNanos(computeNanos);
+            statistics.description = desc;
+            written = writer.writeAsync(statistics);
         }
-        return msg;
+
+        return written.map(outcome -> {
+            if (db) {
+                timings.end(outcome.phase());
+            }
+            StringBuilder msg = new StringBuilder(192).append(WORKLOAD_DONE).append(workload.name().toLowerCase(Locale.ROOT))
+                .append(" is done with ").append(size).append(" units (checksum ").append(checksum).append(") ");
+            timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+            appendOutcome(msg, outcome);
+            return timed(endpoint, msg, timings);
+        });
+    }
+
+    private HttpResponse<ByteBuf> timed(String endpoint, CharSequence msg, RequestTimings timings) {
+        histograms.record(endpoint, timings);
+        return HttpResponse.ok(text(msg)).header(RequestTimings.SERVER_TIMING, timings.serverTiming());
+    }
+
+    private HttpResponse<ByteBuf> overloaded(long retryAfter) {
+        return HttpResponse.<ByteBuf>status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter))
+            .body(text("Micronaut: too many requests in progress, retry in " + retryAfter + " seconds."));
+    }
+
+    /**
+     * Tells whether the statistics of the request are in the database, or only queued for it in write-behind mode.
+     */
+    private static void appendOutcome(StringBuilder msg, StatisticsWriter.Outcome outcome) {
+        if (outcome == StatisticsWriter.Outcome.PERSISTED) {
+            msg.append(PERSISTED);
+        } else if (outcome == StatisticsWriter.Outcome.QUEUED) {
+            msg.append(QUEUED);
+        }
+    }
+
+    /**
+     * Encodes the text straight into a pooled buffer, rather than into a String and then its bytes.
+     * Netty releases it once written, {@link #releaseDiscarded} when the response is dropped before.
+     */
+    private static ByteBuf text(CharSequence text) {
+        return ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, text);
     }
-// end::adocMethodMemory[]
 
     /**
-     * Returns what's in the database.
+     * Releases the body of a response that is built but never written, such as when the request is cancelled while the
+     * workload runs: Reactor discards the response it can no longer deliver.
+     */
+    private static Mono<HttpResponse<ByteBuf>> releaseDiscarded(Mono<HttpResponse<ByteBuf>> response) {
+        return response.doOnDiscard(HttpResponse.class, discarded -> ReferenceCountUtil.safeRelease(discarded.body()));
+    }
+
+    /**
+     * Returns what's in the database, one page at a time.
+     * The page is served from the cache until a Statistics is persisted, and a poll with the ETag of the
+     * previous response gets a 304 without touching the database. With {@code statistics.store.enabled}, the page is
+     * read from the rows of the local store, within their retention.
      * {@code curl 'localhost:8702/micronaut/stats'}
+     * {@code curl 'localhost:8702/micronaut/stats?after=1000&limit=100'}
+     * {@code curl -i -H 'If-None-Match: "<etag>"' 'localhost:8702/micronaut/stats'}
      *
+     * @param after       the id of the last Statistics of the previous page.
+     * @param limit       the maximum number of Statistics to return.
+     * @param ifNoneMatch the ETag of the previous response.
      * @return the list of Statistics.
      */
 // tag::adocMethodStats[]
     @Get(uri = "/stats", produces = MediaType.APPLICATION_JSON)
-    public List<Statistics> stats() {
-        LOGGER.log(INFO, "Micronaut: retrieving statistics");
-        List<Statistics> result = new ArrayList<Statistics>();
-        for (Statistics stats : repository.findAll()) {
-            result.add(stats);
+    public HttpResponse<byte[]> stats(@QueryValue(value = "after", defaultValue = "0") Long after,
+                                      @QueryValue(value = "limit", defaultValue = "1000") Integer limit,
+                                      @Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        if (requestLog.sample(LOGGER, "stats")) {
+            requestLog.log(LOGGER, STATS_LOG, after, limit);
         }
-        return result;
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return metrics.record("stats", true, size, () -> {
+            RequestTimings timings = RequestTimings.start();
+            String etag = '"' + cache.etag() + '"';
+            MutableHttpResponse<byte[]> response;
+            if (matches(ifNoneMatch, etag)) {
+                response = HttpResponse.<byte[]>notModified().header(HttpHeaders.ETAG, etag);
+            } else {
+                StatisticsCache.Page page = cache.page(after, size, () -> {
+                    List<Statistics> statistics = store.enabled()
+                        ? store.page(after, size)
+                        : repository.findByIdGreaterThan(after, byId(size));
+                    timings.end("query");
+                    try {
+                        return jsonMapper.writeValueAsBytes(statistics);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        timings.end("serialize");
+                    }
+                });
+                // A shared load gives the page of an older version, which the client may already have
+                String pageEtag = '"' + page.etag() + '"';
+                response = matches(ifNoneMatch, pageEtag)
+                    ? HttpResponse.<byte[]>notModified().header(HttpHeaders.ETAG, pageEtag)
+                    : HttpResponse.ok(page.body()).header(HttpHeaders.ETAG, pageEtag);
+            }
+            histograms.record("stats", timings);
+            return response.header(RequestTimings.SERVER_TIMING, timings.serverTiming());
+        });
     }
 // end::adocMethodStats[]
+
+    private static boolean matches(@Nullable String ifNoneMatch, String etag) {
+        return ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"));
+    }
+
+    /**
+     * Returns count, mean, percentiles and max of the durations, in milliseconds, computed by the database, or with
+     * {@code statistics.store.enabled} from the 1-minute and 1-hour aggregates of the local store.
+     * {@code curl 'localhost:8702/micronaut/stats/summary'}
+     * {@code curl 'localhost:8702/micronaut/stats/summary?bucket=minute'}
+     *
+     * @param bucket the time bucket of done_at to group by: minute, hour or day.
+     * @return the summary per type, parameter, description and time bucket.
+     */
+    @Get(uri = "/stats/summary", produces = MediaType.APPLICATION_JSON)
+    public List<StatisticsSummary> summary(@QueryValue(value = "bucket", defaultValue = "hour") String bucket) {
+        if (requestLog.sample(LOGGER, "summary")) {
+            requestLog.log(LOGGER, SUMMARY_LOG, bucket);
+        }
+        if (!BUCKETS.contains(bucket)) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, "bucket must be one of " + BUCKETS);
+        }
+        return store.enabled() ? store.summary(bucket) : repository.summary(bucket);
+    }
+
+    /**
+     * Streams what's in the database, as NDJSON or as a JSON array, without loading it in memory.
+     * Rows are read in keyset chunks so no transaction is held open while the client consumes them.
+     * {@code curl 'localhost:8702/micronaut/stats/stream'}
+     * {@code curl 'localhost:8702/micronaut/stats/stream?after=1000&format=json'}
+     *
+     * @param after  the id after which to start streaming.
+     * @param format either ndjson or json.
+     * @return the stream of Statistics.
+     */
+    @Get(uri = "/stats/stream", produces = {APPLICATION_NDJSON, MediaType.APPLICATION_JSON})
+    public HttpResponse<Publisher<byte[]>> streamStats(@QueryValue(value = "after", defaultValue = "0") Long after,
+                                                       @QueryValue(value = "format", defaultValue = "ndjson") String format) {
+        if (requestLog.sample(LOGGER, "stream")) {
+            requestLog.log(LOGGER, STREAM_LOG, after, format);
+        }
+        boolean array = "json".equals(format);
+        Flux<byte[]> chunks = Flux.<List<Statistics>, Long>generate(() -> after, (last, sink) -> {
+                List<Statistics> chunk = repository.findByIdGreaterThan(last, byId(STREAM_CHUNK_SIZE));
+                if (chunk.isEmpty()) {
+                    sink.complete();
+                    return last;
+                }
+                sink.next(chunk);
+                return chunk.get(chunk.size() - 1).getId();
+            })
+            .index((i, chunk) -> toJson(chunk, array, i == 0))
+            .subscribeOn(Schedulers.boundedElastic());
+        if (array) {
+            chunks = Flux.concat(Flux.just("[".getBytes(StandardCharsets.UTF_8)), chunks, Flux.just("]".getBytes(StandardCharsets.UTF_8)));
+        }
+        return HttpResponse.<Publisher<byte[]>>ok(chunks)
+            .contentType(array ? MediaType.APPLICATION_JSON : APPLICATION_NDJSON);
+    }
+
+    private static Pageable byId(int size) {
+        return Pageable.from(0, size, Sort.of(Sort.Order.asc("id")));
+    }
+
+    private byte[] toJson(List<Statistics> chunk, boolean array, boolean first) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (Statistics statistics : chunk) {
+                if (array && !first) {
+                    out.write(',');
+                }
+                out.write(jsonMapper.writeValueAsBytes(statistics));
+                if (!array) {
+                    out.write('\n');
+                }
+                first = false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Inserts statistics sent as NDJSON or as a JSON array, for example the output of /stats/stream, in chunks of
+     * {@code statistics.batch.chunk-size} rows, each in its own transaction.
+     * {@code curl -X POST -H 'Content-Type: application/x-ndjson' --data-binary @stats.ndjson 'localhost:8702/micronaut/stats/batch'}
+     * {@code curl -X POST -H 'Content-Type: application/json' --data-binary @stats.json 'localhost:8702/micronaut/stats/batch'}
+     *
+     * @param contentType the format of the body.
+     * @param body        the statistics, read as they are inserted.
+     * @return the number of statistics inserted.
+     */
+    @Post(uri = "/stats/batch", consumes = {APPLICATION_NDJSON, MediaType.APPLICATION_JSON}, produces = MediaType.APPLICATION_JSON)
+    @ExecuteOn(TaskExecutors.IO)
+    public StatisticsLoader.Result loadStats(@Header(HttpHeaders.CONTENT_TYPE) String contentType, @Body InputStream body) throws IOException {
+        boolean array = MediaType.of(contentType).matches(MediaType.APPLICATION_JSON_TYPE);
+        if (requestLog.sample(LOGGER, "batch")) {
+            requestLog.log(LOGGER, BATCH_LOG, array ? "json" : "ndjson");
+        }
+        try {
+            return loader.load(body, array);
+        } catch (IllegalArgumentException e) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the percentiles, in milliseconds, of the phases of the cpu, memory and stats requests since the start.
+     * {@code curl 'localhost:8702/micronaut/timings'}
+     *
+     * @return the percentiles and histogram of each phase of each endpoint.
+     */
+    @Get(uri = "/timings", produces = MediaType.APPLICATION_JSON)
+    public Map<String, Map<String, TimingHistograms.Summary>> timings() {
+        return histograms.snapshot();
+    }
+
+    /**
+     * Returns the queue depth and flush latency of the statistics writer.
+     * {@code curl 'localhost:8702/micronaut/stats/writer'}
+     *
+     * @return the writer metrics.
+     */
+    @Get(uri = "/stats/writer", produces = MediaType.APPLICATION_JSON)
+    public StatisticsWriter.Metrics writerMetrics() {
+        return writer.metrics();
+    }
 }
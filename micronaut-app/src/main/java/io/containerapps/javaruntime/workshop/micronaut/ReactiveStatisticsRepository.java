@@ -0,0 +1,82 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+import io.micronaut.context.BeanProvider;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+import jakarta.inject.Singleton;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Inserts {@link Statistics} with R2DBC, on the event loop of the driver,
+ * so no thread waits for the database while the insert is in flight.
+ */
+@Singleton
+public class ReactiveStatisticsRepository {
+
+    private static final String NEXT_ID_BLOCK = "select nextval('statistics_micronaut_seq')";
+    private static final String INSERT = "insert into Statistics_Micronaut (id, description, done_at, duration, framework, parameter, type)"
+        + " values ($1, $2, $3, $4, $5, $6, $7)";
+    // Same block of ids per sequence value as the pooled-lo optimizer of Hibernate, so the ids never collide
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final BeanProvider<ConnectionFactory> connectionFactory;
+    private long nextId;
+    private long lastId = -1;
+
+    public ReactiveStatisticsRepository(BeanProvider<ConnectionFactory> connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    public Mono<Void> persist(Statistics statistics) {
+        return Mono.usingWhen(connectionFactory.get().create(),
+                connection -> nextId(connection)
+                    .doOnNext(statistics::setId)
+                    .flatMap(id -> Mono.from(insert(connection, statistics).execute()))
+                    .flatMap(result -> Mono.from(result.getRowsUpdated())),
+                Connection::close)
+            .then();
+    }
+
+    private Mono<Long> nextId(Connection connection) {
+        synchronized (this) {
+            if (nextId <= lastId) {
+                return Mono.just(nextId++);
+            }
+        }
+        return Flux.from(connection.createStatement(NEXT_ID_BLOCK).execute())
+            .flatMap(result -> result.map((row, metadata) -> row.get(0, Long.class)))
+            .next()
+            .map(first -> {
+                synchronized (this) {
+                    nextId = first;
+                    lastId = first + ALLOCATION_SIZE - 1;
+                    return nextId++;
+                }
+            });
+    }
+
+    private static Statement insert(Connection connection, Statistics statistics) {
+        Statement insert = connection.createStatement(INSERT);
+        insert.bind(0, statistics.getId());
+        if (statistics.description == null) {
+            insert.bindNull(1, String.class);
+        } else {
+            insert.bind(1, statistics.description);
+        }
+        insert.bind(2, OffsetDateTime.ofInstant(statistics.doneAt, ZoneOffset.UTC));
+        if (statistics.duration == null) {
+            insert.bindNull(3, Long.class);
+        } else {
+            insert.bind(3, statistics.duration.toNanos());
+        }
+        insert.bind(4, (short) statistics.framework.ordinal());
+        insert.bind(5, statistics.parameter);
+        insert.bind(6, (short) statistics.type.ordinal());
+        return insert;
+    }
+}
@@ -3,7 +3,9 @@ package io.containerapps.javaruntime.workshop.micronaut;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import java.time.Duration;
 import java.time.Instant;
@@ -12,7 +14,9 @@ import java.time.Instant;
 @Table(name = "Statistics_Micronaut")
 public class Statistics {
 
-    @GeneratedValue
+    // Blocks of 50 ids per sequence value, like the two other apps
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "statistics_micronaut_seq")
+    @SequenceGenerator(name = "statistics_micronaut_seq", sequenceName = "statistics_micronaut_seq", allocationSize = 50)
     @Id
     private Long id;
     @Column(name = "done_at")
@@ -32,8 +36,9 @@ public class Statistics {
     }
 }
 
+// Persisted by ordinal: new types go at the end
 enum Type {
-    CPU, MEMORY
+    CPU, MEMORY, JSON, REGEX, SORT, HASH, GZIP, FILE
 }
 
 enum Framework {
@@ -0,0 +1,137 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the serialized pages of {@code /stats} until a {@link Statistics} is persisted.
+ * Every persist bumps a version, which is also the ETag of the pages, so an unchanged poll
+ * is answered with a 304 without touching the database.
+ * Writes made by other instances are not seen, so the version is also bumped after {@code max-age}.
+ * Concurrent requests for the same page share a single load: the first one queries and serializes it, the others wait
+ * for its result. A load started less than {@code coalescing-window} ago is shared even if Statistics were persisted
+ * since, so a burst of refreshes runs one query while the statistics keep being written.
+ */
+@Singleton
+public class StatisticsCache {
+
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final long coalescingWindowNanos;
+    // Tells the ETags of this run from the ones of a previous run
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+    private volatile long versionNanos = System.nanoTime();
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private final Map<String, Load> loads = new ConcurrentHashMap<>();
+
+    public StatisticsCache(@Value("${statistics.cache.max-entries:100}") int maxEntries,
+                           @Value("${statistics.cache.max-age:1m}") Duration maxAge,
+                           @Value("${statistics.cache.coalescing-window:1s}") Duration coalescingWindow) {
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.coalescingWindowNanos = coalescingWindow.toNanos();
+    }
+
+    /**
+     * @return the ETag of the current version of the statistics.
+     */
+    public String etag() {
+        return etag(currentVersion());
+    }
+
+    /**
+     * Returns the cached page, or loads, serializes and caches it if a Statistics was persisted since.
+     * While a page is loading, the requests for the same page wait for it instead of loading it again.
+     */
+    public Page page(long after, int limit, Supplier<byte[]> loader) {
+        // Read before loading, so a persist made while loading makes the page stale
+        long current = currentVersion();
+        String key = after + ":" + limit;
+        Page page = pages.get(key);
+        if (page != null && page.version() == current) {
+            return page;
+        }
+        long now = System.nanoTime();
+        Load started = new Load(current, now, new CompletableFuture<>());
+        Load load = loads.compute(key, (k, previous) -> previous != null && previous.shares(current, now, coalescingWindowNanos) ? previous : started);
+        if (load != started) {
+            return load.join();
+        }
+        try {
+            page = new Page(current, etag(current), loader.get());
+        } catch (RuntimeException | Error e) {
+            loads.remove(key, load);
+            load.page().completeExceptionally(e);
+            throw e;
+        }
+        load.page().complete(page);
+        if (coalescingWindowNanos == 0) {
+            loads.remove(key, load);
+        } else if (loads.size() > Math.max(maxEntries, 1)) {
+            loads.values().removeIf(done -> done.page().isDone() && !done.shares(current, now, coalescingWindowNanos));
+        }
+        if (maxEntries > 0) {
+            if (pages.size() >= maxEntries) {
+                pages.clear();
+            }
+            pages.put(key, page);
+        }
+        return page;
+    }
+
+    /**
+     * Called once Statistics are persisted.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        versionNanos = System.nanoTime();
+        pages.clear();
+    }
+
+    private long currentVersion() {
+        if (System.nanoTime() - versionNanos > maxAgeNanos) {
+            invalidate();
+        }
+        return version.get();
+    }
+
+    private String etag(long version) {
+        return epoch + "-" + version;
+    }
+
+    /**
+     * A page being loaded, or loaded less than {@code coalescing-window} ago.
+     */
+    private record Load(long version, long startNanos, CompletableFuture<Page> page) {
+
+        boolean shares(long version, long nowNanos, long coalescingWindowNanos) {
+            return (!page.isDone() && this.version == version) || nowNanos - startNanos <= coalescingWindowNanos;
+        }
+
+        Page join() {
+            try {
+                return page.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A page of Statistics serialized in JSON.
+     */
+    public record Page(long version, String etag, byte[] body) {
+    }
+}
@@ -0,0 +1,118 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Introspected;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Loads statistics sent as NDJSON or as a JSON array, parsing them one at a time and inserting them in chunks,
+ * each chunk in its own transaction with JDBC batching.
+ * The ids are ignored and generated again, the chunks inserted before an invalid statistics stay in the database.
+ */
+@Singleton
+public class StatisticsLoader {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    private final StatisticsRepository repository;
+    private final StatisticsCache cache;
+    private final StatisticsStore store;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public StatisticsLoader(StatisticsRepository repository, StatisticsCache cache, StatisticsStore store, ObjectMapper objectMapper,
+                            @Value("${statistics.batch.chunk-size:1000}") int chunkSize) {
+        this.repository = repository;
+        this.cache = cache;
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param array true for a JSON array, false for NDJSON.
+     * @throws IllegalArgumentException if the body is not valid, after inserting the chunks before the invalid statistics.
+     */
+    public Result load(InputStream body, boolean array) throws IOException {
+        Chunks chunks = new Chunks();
+        // NDJSON is a sequence of root-level objects, which the parser reads one after the other
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (array && parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("expected an array of statistics");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                chunks.add(objectMapper.readValue(parser, Statistics.class));
+            }
+            if (token != (array ? JsonToken.END_ARRAY : null)) {
+                throw new IllegalArgumentException("expected a statistics object but got " + token);
+            }
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            chunks.flush();
+            throw new IllegalArgumentException("invalid statistics #" + (chunks.inserted + 1) + ", the " + chunks.inserted
+                + " previous ones are inserted: " + e.getMessage(), e);
+        }
+        chunks.flush();
+        Result result = chunks.result();
+        LOGGER.log(INFO, "Micronaut: loaded {0} statistics in {1} chunks in {2} ms", result.inserted(), result.chunks(), result.millis());
+        return result;
+    }
+
+    /**
+     * Accumulates the statistics and inserts them every {@code chunkSize}.
+     */
+    private final class Chunks {
+
+        private final long start = System.nanoTime();
+        private final List<Statistics> chunk = new ArrayList<>(chunkSize);
+        private long inserted;
+        private int count;
+
+        void add(Statistics statistics) {
+            if (statistics.doneAt == null || statistics.framework == null) {
+                throw new IllegalArgumentException("doneAt and framework can't be null");
+            }
+            statistics.setId(null);
+            chunk.add(statistics);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            repository.saveAll(chunk);
+            cache.invalidate();
+            chunk.forEach(store::append);
+            inserted += chunk.size();
+            count++;
+            chunk.clear();
+        }
+
+        Result result() {
+            return new Result(inserted, count, Math.round((System.nanoTime() - start) / 1_000.0) / 1_000.0);
+        }
+    }
+
+    /**
+     * The number of statistics inserted, in how many chunks and how many milliseconds.
+     */
+    @Introspected
+    public record Result(long inserted, int chunks, double millis) {
+    }
+}
@@ -1,8 +1,35 @@
 package io.containerapps.javaruntime.workshop.micronaut;
 
 import io.micronaut.data.annotation.Repository;
+import io.micronaut.data.model.Pageable;
 import io.micronaut.data.repository.CrudRepository;
+import io.micronaut.transaction.annotation.ReadOnly;
+
+import javax.persistence.EntityManager;
+import java.util.List;
 
 @Repository
-interface StatisticsRepository extends CrudRepository<Statistics, Long> {
+abstract class StatisticsRepository implements CrudRepository<Statistics, Long> {
+
+    private static final String SUMMARY_QUERY = StatisticsSummary.query("Statistics_Micronaut");
+
+    private final EntityManager entityManager;
+
+    StatisticsRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public abstract List<Statistics> findByIdGreaterThan(Long after, Pageable pageable);
+
+    /**
+     * Aggregates the durations in SQL, grouped by type, parameter, description and {@code bucket} of done_at.
+     */
+    @ReadOnly
+    @SuppressWarnings("unchecked")
+    public List<StatisticsSummary> summary(String bucket) {
+        List<Object[]> rows = entityManager.createNativeQuery(SUMMARY_QUERY)
+            .setParameter("bucket", bucket)
+            .getResultList();
+        return rows.stream().map(StatisticsSummary::of).toList();
+    }
 }
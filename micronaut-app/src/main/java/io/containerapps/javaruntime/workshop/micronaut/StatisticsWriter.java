@@ -0,0 +1,277 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Introspected;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import reactor.core.publisher.Mono;
+
+import java.lang.System.Logger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Persists {@link Statistics} either synchronously or, in write-behind mode, through a bounded queue
+ * drained by a background thread that inserts the rows in JDBC batches.
+ * In reactive mode, {@link #writeAsync(Statistics)} inserts them with R2DBC instead.
+ */
+@Singleton
+public class StatisticsWriter {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    /**
+     * What to do when the write-behind queue is full.
+     */
+    public enum Overflow {
+        BLOCK, DROP, SYNC
+    }
+
+    /**
+     * What became of the statistics of a request.
+     */
+    public enum Outcome {
+        /** Not written, the request doesn't ask for it. */
+        NONE,
+        /** Inserted in the database. */
+        PERSISTED,
+        /** Queued, the write-behind thread inserts them with its next batch. */
+        QUEUED,
+        /** Dropped because the write-behind queue is full. */
+        DROPPED,
+        /** Not inserted because the reactive insert failed. */
+        FAILED;
+
+        /**
+         * @return the name of the timing phase of the write: {@code queue} when it only reached the write-behind queue.
+         */
+        public String phase() {
+            return this == QUEUED || this == DROPPED ? "queue" : "persist";
+        }
+    }
+
+    private final StatisticsRepository repository;
+    private final StatisticsCache cache;
+    private final StatisticsStore store;
+    private final ReactiveStatisticsRepository reactiveRepository;
+    private final boolean reactive;
+    private final boolean writeBehind;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Overflow overflow;
+    private final BlockingQueue<Statistics> queue;
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    public StatisticsWriter(StatisticsRepository repository, StatisticsCache cache, StatisticsStore store, ReactiveStatisticsRepository reactiveRepository,
+                            @Value("${statistics.reactive.enabled:false}") boolean reactive,
+                            @Value("${statistics.write-behind.enabled:false}") boolean writeBehind,
+                            @Value("${statistics.write-behind.queue-capacity:10000}") int queueCapacity,
+                            @Value("${statistics.write-behind.batch-size:50}") int batchSize,
+                            @Value("${statistics.write-behind.flush-interval:500ms}") Duration flushInterval,
+                            @Value("${statistics.write-behind.overflow:SYNC}") Overflow overflow) {
+        this.repository = repository;
+        this.cache = cache;
+        this.store = store;
+        this.reactiveRepository = reactiveRepository;
+        this.reactive = reactive;
+        this.writeBehind = writeBehind;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflow = overflow;
+        this.queue = new ArrayBlockingQueue<>(writeBehind ? queueCapacity : 1);
+        if (writeBehind) {
+            LOGGER.log(INFO, "Micronaut: write-behind enabled with capacity {0}, batch size {1}, flush interval {2} and overflow {3}",
+                queueCapacity, batchSize, flushInterval, overflow);
+            drainer = new Thread(this::drain, "statistics-writer");
+            drainer.setDaemon(true);
+            drainer.start();
+        } else {
+            drainer = null;
+        }
+        if (reactive) {
+            LOGGER.log(INFO, "Micronaut: writing statistics with R2DBC");
+        }
+    }
+
+    /**
+     * Persists the statistics, or queues them when write-behind is enabled.
+     *
+     * @return {@link Outcome#QUEUED} if they are queued, {@link Outcome#DROPPED} if the queue is full.
+     */
+    public Outcome write(Statistics statistics) {
+        if (!writeBehind || !running) {
+            persist(statistics);
+            return Outcome.PERSISTED;
+        }
+        boolean queued;
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    queued = put(statistics);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    return Outcome.DROPPED;
+                }
+                break;
+            case DROP:
+                if (!queue.offer(statistics)) {
+                    dropped.incrementAndGet();
+                    return Outcome.DROPPED;
+                }
+                queued = true;
+                break;
+            default:
+                queued = queue.offer(statistics);
+        }
+        if (!queued) {
+            persist(statistics);
+            return Outcome.PERSISTED;
+        } else if (!running && queue.remove(statistics)) {
+            // The shutdown may have drained the queue for the last time before these statistics were queued
+            persist(statistics);
+            return Outcome.PERSISTED;
+        }
+        return Outcome.QUEUED;
+    }
+
+    /**
+     * Waits for room in the queue, but gives up once the writer is shut down.
+     *
+     * @return false if the writer was shut down before the statistics could be queued.
+     */
+    private boolean put(Statistics statistics) throws InterruptedException {
+        long timeout = Math.max(1, flushInterval.toMillis());
+        while (!queue.offer(statistics, timeout, TimeUnit.MILLISECONDS)) {
+            if (!running) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inserts the statistics with R2DBC, without blocking the calling thread, when reactive mode is enabled.
+     * Otherwise the same as {@link #write(Statistics)}.
+     *
+     * @return {@link Outcome#FAILED} if the reactive insert fails, the failure is counted and logged rather than propagated.
+     */
+    public Mono<Outcome> writeAsync(Statistics statistics) {
+        if (!reactive) {
+            return Mono.just(write(statistics));
+        }
+        return reactiveRepository.persist(statistics)
+            .then(Mono.fromCallable(() -> {
+                written.incrementAndGet();
+                cache.invalidate();
+                store.append(statistics);
+                return Outcome.PERSISTED;
+            }))
+            .onErrorResume(e -> {
+                failed.incrementAndGet();
+                LOGGER.log(WARNING, "Micronaut: could not write the statistics", e);
+                return Mono.just(Outcome.FAILED);
+            });
+    }
+
+    public Metrics metrics() {
+        return new Metrics(writeBehind, queue.size(), writeBehind ? queue.size() + queue.remainingCapacity() : 0,
+            written.get(), dropped.get(), failed.get(), flushes.get(), lastFlushNanos / 1_000_000.0, maxFlushNanos / 1_000_000.0);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (drainer == null) {
+            return;
+        }
+        running = false;
+        try {
+            drainer.join(flushInterval.multipliedBy(10).toMillis());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        List<Statistics> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+        LOGGER.log(INFO, "Micronaut: write-behind stopped after writing {0} statistics", written.get());
+    }
+
+    private void drain() {
+        List<Statistics> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Statistics first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Statistics next = running && remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush(List<Statistics> batch) {
+        long start = System.nanoTime();
+        try {
+            repository.saveAll(batch);
+            written.addAndGet(batch.size());
+            cache.invalidate();
+            batch.forEach(store::append);
+        } catch (RuntimeException e) {
+            failed.addAndGet(batch.size());
+            LOGGER.log(WARNING, "Micronaut: could not write " + batch.size() + " statistics", e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lastFlushNanos = elapsed;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            flushes.incrementAndGet();
+            batch.clear();
+        }
+    }
+
+    private void persist(Statistics statistics) {
+        repository.save(statistics);
+        written.incrementAndGet();
+        cache.invalidate();
+        store.append(statistics);
+    }
+
+    /**
+     * Snapshot of the writer, latencies are in milliseconds.
+     */
+    @Introspected
+    public record Metrics(boolean writeBehind, int queueDepth, int queueCapacity, long written, long dropped,
+                          long failed, long flushes, double lastFlushMillis, double maxFlushMillis) {
+    }
+}
@@ -0,0 +1,26 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+/**
+ * A workload of {@code /workload/{name}}, shaped like a hot path of a real service instead of a sleep.
+ * The ones of {@link Workloads} only need the JDK; any bean implementing this interface is added to them by
+ * {@link WorkloadRegistry}, as {@link JsonWorkload} is.
+ */
+interface Workload {
+
+    /**
+     * @return the name of the workload in {@code /workload/{name}}, whatever its case.
+     */
+    String name();
+
+    /**
+     * @return the type of the Statistics of the workload.
+     */
+    Type type();
+
+    /**
+     * Runs {@code size} units of work, each unit being the same work on every run.
+     *
+     * @return a checksum of the work, so the JIT can't drop it.
+     */
+    long run(int size);
+}
@@ -0,0 +1,44 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.TaskExecutors;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+import java.lang.System.Logger;
+import java.util.concurrent.ExecutorService;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Provides the executor the blocking workloads run on: a virtual thread per request when
+ * {@code workload.virtual-threads.enabled} is set and the JVM supports it, otherwise the IO executor.
+ */
+@Factory
+class WorkloadExecutorFactory {
+
+    static final String WORKLOAD = "workload";
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    @Singleton
+    @Named(WORKLOAD)
+    ExecutorService workloadExecutor(@Value("${workload.virtual-threads.enabled:false}") boolean virtualThreads,
+                                     @Named(TaskExecutors.IO) ExecutorService io) {
+        if (!virtualThreads) {
+            return io;
+        }
+        return VirtualThreads.newExecutor("workload-virtual-")
+            .map(executor -> {
+                LOGGER.log(INFO, "Micronaut: running workloads on virtual threads");
+                return executor;
+            })
+            .orElseGet(() -> {
+                LOGGER.log(WARNING, "Micronaut: virtual threads are not supported by this JVM, running workloads on the IO executor");
+                return io;
+            });
+    }
+}
@@ -0,0 +1,67 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrencyLimiterTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testRejectsOverTheLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+
+        String response = limiter.limitAsync(() -> limiter.limitAsync(() -> Mono.just("accepted"), retryAfter -> "retry in " + retryAfter),
+            retryAfter -> "rejected").block();
+        assertThat(response, is("retry in 1"));
+        assertThat(accepted(limiter), is("accepted"));
+        assertThat(registry.get("workload.limiter.rejected").functionCounter().count(), is(1.0));
+        assertThat(registry.get("workload.limiter.limit").gauge().value(), is(1.0));
+    }
+
+    @Test
+    void testHoldsThePermitUntilTheResponseTerminates() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+        Sinks.One<String> pending = Sinks.one();
+
+        CompletableFuture<String> response = limiter.limitAsync(pending::asMono, retryAfter -> "rejected").toFuture();
+        assertThat(accepted(limiter), is("rejected"));
+
+        pending.tryEmitValue("done");
+        assertThat(response.join(), is("done"));
+        assertThat(accepted(limiter), is("accepted"));
+    }
+
+    @Test
+    void testReleasesThePermitWhenTheRequestThrows() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+
+        assertThrows(IllegalStateException.class, () -> limiter.limitAsync(() -> {
+            throw new IllegalStateException("failed");
+        }, retryAfter -> "rejected"));
+        assertThat(accepted(limiter), is("accepted"));
+    }
+
+    @Test
+    void testDisabled() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, false, 1, 1, 1, 0);
+
+        String response = limiter.limitAsync(() -> limiter.limitAsync(() -> Mono.just("accepted"), retryAfter -> "rejected"),
+            retryAfter -> "rejected").block();
+        assertThat(response, is("accepted"));
+        assertThat(registry.get("workload.limiter.rejected").functionCounter().count(), is(0.0));
+    }
+
+    private static String accepted(ConcurrencyLimiter limiter) {
+        return limiter.limitAsync(() -> Mono.just("accepted"), retryAfter -> "rejected").block();
+    }
+}
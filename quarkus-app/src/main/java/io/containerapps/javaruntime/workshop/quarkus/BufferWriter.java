@@ -0,0 +1,40 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes a Vert.x {@link Buffer} entity as it is, the text responses being encoded in one by {@link QuarkusResource}.
+ * A heap buffer is written from its backing array, without copying it.
+ */
+@Provider
+@Produces(MediaType.WILDCARD)
+public class BufferWriter implements MessageBodyWriter<Buffer> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return Buffer.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(Buffer buffer, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return buffer.length();
+    }
+
+    @Override
+    public void writeTo(Buffer buffer, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        ByteBuf bytes = buffer.getByteBuf();
+        bytes.getBytes(bytes.readerIndex(), entityStream, bytes.readableBytes());
+    }
+}
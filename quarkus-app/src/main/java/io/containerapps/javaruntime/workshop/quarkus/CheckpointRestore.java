@@ -0,0 +1,55 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.configuration.AgroalConnectionPoolConfiguration;
+import io.quarkus.runtime.Startup;
+import jakarta.inject.Singleton;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.lang.System.Logger;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Closes the connections of the Agroal pool before a CRaC checkpoint ({@code jcmd <pid> JDK.checkpoint}) and lets it
+ * open them again after the restore. Quarkus already closes the HTTP server. On a JVM without CRaC it is never called.
+ */
+@Startup
+@Singleton
+public class CheckpointRestore implements Resource {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    private final AgroalDataSource dataSource;
+    private int minSize;
+
+    public CheckpointRestore(AgroalDataSource dataSource) {
+        this.dataSource = dataSource;
+        Core.getGlobalContext().register(this);
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) throws InterruptedException {
+        LOGGER.log(INFO, "Quarkus: closing the database connections before the checkpoint");
+        // Keeps the pool from opening new connections, then closes all of them
+        AgroalConnectionPoolConfiguration pool = dataSource.getConfiguration().connectionPoolConfiguration();
+        minSize = pool.minSize();
+        pool.setMinSize(0);
+        dataSource.flush(AgroalDataSource.FlushMode.ALL);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (dataSource.getMetrics().activeCount() + dataSource.getMetrics().availableCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        dataSource.getConfiguration().connectionPoolConfiguration().setMinSize(minSize);
+        dataSource.flush(AgroalDataSource.FlushMode.FILL);
+        LOGGER.log(INFO, "Quarkus: restored, the pool opens {0} connections again", minSize);
+    }
+}
@@ -0,0 +1,150 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.lang.System.Logger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Limits the number of requests in progress, and rejects the others right away, so an overload waits in the clients
+ * instead of filling the heap. The limit follows the gradient of the latency: it shrinks when the latency of the last
+ * requests rises above its long-term average, grows back while it doesn't, and halves when the heap is almost full.
+ */
+@Singleton
+public class ConcurrencyLimiter {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+    private static final String FRAMEWORK = "quarkus";
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 600;
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double minFreeHeap;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int permits;
+    private volatile double shortNanos;
+    // Guarded by this
+    private double limit;
+    private double longNanos;
+
+    public ConcurrencyLimiter(MeterRegistry registry,
+                              @ConfigProperty(name = "workload.limiter.enabled", defaultValue = "false") boolean enabled,
+                              @ConfigProperty(name = "workload.limiter.initial-limit", defaultValue = "20") int initialLimit,
+                              @ConfigProperty(name = "workload.limiter.min-limit", defaultValue = "2") int minLimit,
+                              @ConfigProperty(name = "workload.limiter.max-limit", defaultValue = "200") int maxLimit,
+                              @ConfigProperty(name = "workload.limiter.min-free-heap-percent", defaultValue = "10") int minFreeHeapPercent) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.minFreeHeap = minFreeHeapPercent / 100.0;
+        this.limit = initialLimit;
+        this.permits = initialLimit;
+        if (enabled) {
+            LOGGER.log(INFO, "Quarkus: concurrency limiter enabled from {0} requests, between {1} and {2}, with {3}% of free heap",
+                initialLimit, minLimit, maxLimit, minFreeHeapPercent);
+        }
+        Gauge.builder("workload.limiter.limit", () -> permits)
+            .description("Requests allowed in progress")
+            .tag("framework", FRAMEWORK)
+            .register(registry);
+        FunctionCounter.builder("workload.limiter.rejected", rejected, AtomicLong::get)
+            .description("Requests rejected by the concurrency limiter")
+            .tag("framework", FRAMEWORK)
+            .register(registry);
+    }
+
+    /**
+     * Runs the request if the limit allows it, and learns from its latency once the returned stage completes.
+     *
+     * @param rejected builds the response of a rejected request from the seconds after which to retry.
+     */
+    public <T> CompletionStage<T> limitAsync(Supplier<CompletionStage<T>> request, LongFunction<T> rejected) {
+        if (!enabled) {
+            return request.get();
+        }
+        int current = tryAcquire();
+        if (current < 0) {
+            return CompletableFuture.completedFuture(rejected.apply(retryAfter()));
+        }
+        long start = System.nanoTime();
+        CompletionStage<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            release(start, current);
+            throw e;
+        }
+        return response.whenComplete((result, failure) -> release(start, current));
+    }
+
+    /**
+     * @return the requests in progress before this one, or -1 if it is rejected.
+     */
+    private int tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            // The used heap includes the garbage not collected yet, so it only lowers the concurrency to the minimum
+            if (current >= permits || (current >= minLimit && freeHeap() < minFreeHeap)) {
+                rejected.incrementAndGet();
+                return -1;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return current;
+    }
+
+    private void release(long start, int inFlightBefore) {
+        inFlight.decrementAndGet();
+        update(System.nanoTime() - start, inFlightBefore);
+    }
+
+    private synchronized void update(long nanos, int inFlightBefore) {
+        shortNanos = shortNanos == 0 ? nanos : shortNanos + (nanos - shortNanos) / SHORT_WINDOW;
+        longNanos = longNanos == 0 ? nanos : longNanos + (nanos - longNanos) / LONG_WINDOW;
+        // After a long overload the average has caught up with the latency, bring it back down
+        if (longNanos > 2 * shortNanos) {
+            longNanos *= 0.95;
+        }
+        double target;
+        if (freeHeap() < minFreeHeap) {
+            target = limit / 2;
+        } else if (inFlightBefore < limit / 2) {
+            // Far from the limit, the latency says nothing about it
+            return;
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longNanos / shortNanos));
+            target = limit * gradient + Math.sqrt(limit);
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+        permits = (int) limit;
+    }
+
+    /**
+     * @return the recent latency, in whole seconds, as the time after which a rejected request can be retried.
+     */
+    private long retryAfter() {
+        return Math.max(1, (long) Math.ceil(shortNanos / 1_000_000_000));
+    }
+
+    private static double freeHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return 1 - (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+    }
+}
@@ -0,0 +1,53 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import jakarta.inject.Singleton;
+import jakarta.json.bind.Jsonb;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Serializes 100 Statistics to JSON, then parses them back, with the Jsonb of Quarkus, the one of /stats.
+ */
+@Singleton
+class JsonWorkload implements Workload {
+
+    private final Jsonb jsonb;
+    private final Statistics[] payload = new Statistics[100];
+
+    JsonWorkload(Jsonb jsonb) {
+        this.jsonb = jsonb;
+        Instant doneAt = Instant.parse("2026-10-18T01:00:00Z");
+        for (int i = 0; i < payload.length; i++) {
+            Statistics statistics = new Statistics();
+            statistics.id = (long) i;
+            statistics.doneAt = doneAt.plusMillis(i * 37L);
+            statistics.type = Type.values()[i % 2];
+            statistics.parameter = Integer.toString(i * 10);
+            statistics.duration = Duration.ofNanos(20_000_000L + i * 12_345L);
+            statistics.description = i % 3 == 0 ? null : "java17";
+            payload[i] = statistics;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public Type type() {
+        return Type.JSON;
+    }
+
+    @Override
+    public long run(int size) {
+        long checksum = 0;
+        for (int unit = 0; unit < size; unit++) {
+            String json = jsonb.toJson(payload);
+            Statistics[] parsed = jsonb.fromJson(json, Statistics[].class);
+            checksum += json.length() + parsed[unit % parsed.length].duration.toNanos();
+        }
+        return checksum;
+    }
+}
@@ -1,19 +1,46 @@
 // tag::adocHeader[]
 package io.containerapps.javaruntime.workshop.quarkus;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import jakarta.json.bind.Jsonb;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.System.Logger;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
-import static java.lang.System.Logger.Level.INFO;
 import static java.lang.invoke.MethodHandles.lookup;
 
 @Path("/quarkus")
@@ -21,11 +48,53 @@ import static java.lang.invoke.MethodHandles.lookup;
 public class QuarkusResource {
 
     private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 10000;
+    private static final Set<String> BUCKETS = Set.of("minute", "hour", "day");
+    private static final String CPU_DONE = "Quarkus: CPU consumption is done with ";
+    private static final String MEMORY_DONE = "Quarkus: Memory consumption is done with ";
+    private static final String WORKLOAD_DONE = "Quarkus: Workload ";
+    private static final int MAX_WORKLOAD_SIZE = 10000;
+    private static final String PERSISTED = " The result is persisted in the database.";
+    private static final String QUEUED = " The result is queued to be persisted in the database.";
+    private static final RequestLog.Format HELLO_LOG = RequestLog.Format.of("hello", "Quarkus: hello");
+    private static final RequestLog.Format CPU_LOG = RequestLog.Format.of("cpu", "Quarkus: cpu: {iterations} {db} with desc {desc} using {kernel} over {parallelism}");
+    private static final RequestLog.Format MEMORY_LOG = RequestLog.Format.of("memory", "Quarkus: memory: {bites} {db} with desc {desc} using {strategy}");
+    private static final RequestLog.Format WORKLOAD_LOG = RequestLog.Format.of("workload", "Quarkus: workload: {name} {size} {db} with desc {desc}");
+    private static final RequestLog.Format STATS_LOG = RequestLog.Format.of("stats", "Quarkus: retrieving statistics after {after} limited to {limit}");
+    private static final RequestLog.Format SUMMARY_LOG = RequestLog.Format.of("summary", "Quarkus: summarizing statistics by {bucket}");
+    private static final RequestLog.Format STREAM_LOG = RequestLog.Format.of("stream", "Quarkus: streaming statistics after {after} as {format}");
+    private static final RequestLog.Format BATCH_LOG = RequestLog.Format.of("batch", "Quarkus: loading statistics as {format}");
 
     private final StatisticsRepository repository;
+    private final StatisticsWriter writer;
+    private final StatisticsCache cache;
+    private final StatisticsStore store;
+    private final StatisticsLoader loader;
+    private final Jsonb jsonb;
+    private final WorkloadExecutor workload;
+    private final WorkloadMetrics metrics;
+    private final TimingHistograms histograms;
+    private final ConcurrencyLimiter limiter;
+    private final RequestLog requestLog;
+    private final WorkloadRegistry workloads;
 
-    public QuarkusResource(StatisticsRepository statisticsRepository) {
+    public QuarkusResource(StatisticsRepository statisticsRepository, StatisticsWriter statisticsWriter, StatisticsCache statisticsCache, StatisticsStore statisticsStore,
+                           StatisticsLoader statisticsLoader, Jsonb jsonb, WorkloadExecutor workloadExecutor, WorkloadMetrics workloadMetrics,
+                           TimingHistograms timingHistograms, ConcurrencyLimiter concurrencyLimiter, RequestLog requestLog,
+                           WorkloadRegistry workloadRegistry) {
         this.repository = statisticsRepository;
+        this.writer = statisticsWriter;
+        this.cache = statisticsCache;
+        this.store = statisticsStore;
+        this.loader = statisticsLoader;
+        this.jsonb = jsonb;
+        this.workload = workloadExecutor;
+        this.metrics = workloadMetrics;
+        this.histograms = timingHistograms;
+        this.limiter = concurrencyLimiter;
+        this.requestLog = requestLog;
+        this.workloads = workloadRegistry;
     }
 // end::adocHeader[]
 
@@ -38,8 +107,10 @@ public class QuarkusResource {
 // tag::adocMethodHello[]
     @GET
     public String hello() {
-        LOGGER.log(INFO, "Quarkus: hello");
-        return "Quarkus: hello";
+        if (requestLog.sample(LOGGER, "hello")) {
+            requestLog.log(LOGGER, HELLO_LOG);
+        }
+        return metrics.record("hello", false, WorkloadMetrics.NO_SIZE, () -> "Quarkus: hello");
     }
 // end::adocMethodHello[]
 
@@ -49,51 +120,73 @@ public class QuarkusResource {
      * {@code curl 'localhost:8701/quarkus/cpu?iterations=10'}
      * {@code curl 'localhost:8701/quarkus/cpu?iterations=10&db=true'}
      * {@code curl 'localhost:8701/quarkus/cpu?iterations=10&db=true&desc=java17'}
+     * {@code curl 'localhost:8701/quarkus/cpu?iterations=10000&kernel=hash&parallelism=4'}
      *
-     * @param iterations the number of iterations to run (times 20,000).
+     * @param iterations  the number of iterations to run (times 20,000).
+     * @param kernel      what each iteration does: sleep (every 20,000 iterations), hash or sum.
+     * @param parallelism the number of slices the iterations are split in, forked in the common ForkJoinPool.
      * @return the result
      */
 // tag::adocMethodCPU[]
     @GET
     @Path("/cpu")
-    public String cpu(@QueryParam("iterations") @DefaultValue("10") Long iterations,
-                      @QueryParam("db") @DefaultValue("false") Boolean db,
-                      @QueryParam("desc") String desc) {
-        LOGGER.log(INFO, "Quarkus: cpu: {0} {1} with desc {2}", iterations, db, desc);
+    public CompletionStage<Response> cpu(@QueryParam("iterations") @DefaultValue("10") Long iterations,
+                                       @QueryParam("db") @DefaultValue("false") Boolean db,
+                                       @QueryParam("desc") String desc,
+                                       @QueryParam("kernel") @DefaultValue("sleep") String kernel,
+                                       @QueryParam("parallelism") @DefaultValue("1") Integer parallelism) {
+        if (requestLog.sample(LOGGER, "cpu")) {
+            requestLog.log(LOGGER, CPU_LOG, iterations, db, desc, kernel, parallelism);
+        }
+        CpuWorkload.Kernel cpuKernel;
+        try {
+            cpuKernel = CpuWorkload.Kernel.of(kernel);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("kernel must be one of " + Arrays.toString(CpuWorkload.Kernel.values()));
+        }
+        if (parallelism < 1 || parallelism > CpuWorkload.MAX_PARALLELISM) {
+            throw new BadRequestException("parallelism must be between 1 and " + CpuWorkload.MAX_PARALLELISM);
+        }
+        return limiter.limitAsync(() -> metrics.recordAsync("cpu", db, iterations,
+            () -> workload.supply(() -> cpuWorkload(iterations, db, desc, cpuKernel, parallelism)).thenCompose(Function.identity())), this::overloaded);
+    }
+
+    private CompletionStage<Response> cpuWorkload(Long iterations, Boolean db, String desc, CpuWorkload.Kernel kernel, int parallelism) {
         Long iterationsDone = iterations;
+        boolean sequential = kernel == CpuWorkload.Kernel.SLEEP && parallelism == 1;
+        String kernelName = kernel.name().toLowerCase(Locale.ROOT);
 
-        Instant start = Instant.now();
+        RequestTimings timings = RequestTimings.start();
         if (iterations == null) {
             iterations = 20000L;
         } else {
             iterations *= 20000;
         }
-        // tag::adocAlgoCPU[]
-        while (iterations > 0) {
-            if (iterations % 20000 == 0) {
-                try {
-                    Thread.sleep(20);
-                } catch (InterruptedException ie) {
-                }
-            }
-            iterations--;
-        }
-        // end::adocAlgoCPU[]
+        CpuWorkload.burn(iterations, kernel, parallelism);
+        long computeNanos = timings.end("compute");
 
+        CompletionStage<StatisticsWriter.Outcome> written = CompletableFuture.completedFuture(StatisticsWriter.Outcome.NONE);
         if (db) {
             Statistics statistics = new Statistics();
             statistics.type = Type.CPU;
-            statistics.parameter = iterations.toString();
-            statistics.duration = Duration.between(start, Instant.now());
+            statistics.parameter = sequential ? iterationsDone.toString() : iterationsDone + ":" + kernelName + ":" + parallelism;
+            statistics.duration = Duration.ofNanos(computeNanos);
             statistics.description = desc;
-            repository.persist(statistics);
+            written = writer.writeAsync(statistics);
         }
 
-        String msg = "Quarkus: CPU consumption is done with " + iterationsDone + " iterations in " + Duration.between(start, Instant.now()).getNano() + " nano-seconds.";
-        if (db) {
-            msg += " The result is persisted in the database.";
-        }
-        return msg;
+        return written.thenApply(outcome -> {
+            if (db) {
+                timings.end(outcome.phase());
+            }
+            StringBuilder msg = new StringBuilder(192).append(CPU_DONE).append(iterationsDone).append(" iterations ");
+            if (!sequential) {
+                msg.append("using ").append(kernelName).append(" over ").append(parallelism).append(" slices ");
+            }
+            timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+            appendOutcome(msg, outcome);
+            return timed("cpu", msg, timings);
+        });
     }
 // end::adocMethodCPU[]
 
@@ -103,63 +196,318 @@ public class QuarkusResource {
      * {@code curl 'localhost:8701/quarkus/memory?bites=10'}
      * {@code curl 'localhost:8701/quarkus/memory?bites=10&db=true'}
      * {@code curl 'localhost:8701/quarkus/memory?bites=10&db=true&desc=java17'}
+     * {@code curl 'localhost:8701/quarkus/memory?bites=10&strategy=direct'}
      *
-     * @param bites the number of megabytes to eat
+     * @param bites    the number of megabytes to eat
+     * @param strategy how to eat them: hashmap, array, direct or mapped.
      * @return the result.
      */
 // tag::adocMethodMemory[]
     @GET
     @Path("/memory")
-    public String memory(@QueryParam("bites") @DefaultValue("10") Integer bites,
-                         @QueryParam("db") @DefaultValue("false") Boolean db,
-                         @QueryParam("desc") String desc) {
-        LOGGER.log(INFO, "Quarkus: memory: {0} {1} with desc {2}", bites, db, desc);
-
-        Instant start = Instant.now();
-        if (bites == null) {
-            bites = 1;
-        }
-        // tag::adocAlgoMemory[]
-        HashMap hunger = new HashMap<>();
-        for (int i = 0; i < bites * 1024 * 1024; i += 8192) {
-            byte[] bytes = new byte[8192];
-            hunger.put(i, bytes);
-            for (int j = 0; j < 8192; j++) {
-                bytes[j] = '0';
-            }
+    public CompletionStage<Response> memory(@QueryParam("bites") @DefaultValue("10") Integer bites,
+                                          @QueryParam("db") @DefaultValue("false") Boolean db,
+                                          @QueryParam("desc") String desc,
+                                          @QueryParam("strategy") @DefaultValue("hashmap") String strategy) {
+        if (requestLog.sample(LOGGER, "memory")) {
+            requestLog.log(LOGGER, MEMORY_LOG, bites, db, desc, strategy);
+        }
+        MemoryStrategy memoryStrategy;
+        try {
+            memoryStrategy = MemoryStrategy.of(strategy);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("strategy must be one of " + Arrays.toString(MemoryStrategy.values()));
         }
-        // end::adocAlgoMemory[]
+        return limiter.limitAsync(() -> metrics.recordAsync("memory", db, bites,
+            () -> workload.supply(() -> memoryWorkload(bites, db, desc, memoryStrategy)).thenCompose(Function.identity())), this::overloaded);
+    }
+
+    private CompletionStage<Response> memoryWorkload(Integer bites, Boolean db, String desc, MemoryStrategy strategy) {
+        RequestTimings timings = RequestTimings.start();
+        int eaten = bites == null ? 1 : bites;
+        AllocationMeter meter = AllocationMeter.start();
+        strategy.eat(eaten);
+        long allocationNanos = timings.end("allocation");
+        long allocatedBytes = meter.allocatedBytes();
+        long gcCount = meter.gcCount();
+        long gcMillis = meter.gcMillis();
 
+        CompletionStage<StatisticsWriter.Outcome> written = CompletableFuture.completedFuture(StatisticsWriter.Outcome.NONE);
         if (db) {
             Statistics statistics = new Statistics();
             statistics.type = Type.MEMORY;
-            statistics.parameter = bites.toString();
-            statistics.duration = Duration.between(start, Instant.now());
+            statistics.parameter = strategy == MemoryStrategy.HASHMAP ? Integer.toString(eaten) : eaten + ":" + strategy.name().toLowerCase(Locale.ROOT);
+            statistics.duration = Duration.ofNanos(allocationNanos);
             statistics.description = desc;
-            repository.persist(statistics);
+            written = writer.writeAsync(statistics);
+        }
+
+        return written.thenApply(outcome -> {
+            if (db) {
+                timings.end(outcome.phase());
+            }
+            StringBuilder msg = new StringBuilder(256).append(MEMORY_DONE).append(eaten).append(" bites using ").append(strategy.name().toLowerCase(Locale.ROOT))
+                .append(" (").append(allocatedBytes).append(" bytes allocated on the heap, ").append(gcCount).append(" GCs for ").append(gcMillis).append(" ms) ");
+            timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+            appendOutcome(msg, outcome);
+            return timed("memory", msg, timings);
+        });
+    }
+// end::adocMethodMemory[]
+
+    /**
+     * Runs a workload shaped like a hot path of a real service: json, regex, sort, hash, gzip or file.
+     * {@code curl 'localhost:8701/quarkus/workload/json'}
+     * {@code curl 'localhost:8701/quarkus/workload/regex?size=100'}
+     * {@code curl 'localhost:8701/quarkus/workload/gzip?size=10&db=true&desc=java17'}
+     *
+     * @param name the name of the workload.
+     * @param size the number of units of work to run, see {@link Workloads} and {@link JsonWorkload}.
+     * @return the result.
+     */
+    @GET
+    @Path("/workload/{name}")
+    public CompletionStage<Response> workload(@PathParam("name") String name,
+                                            @QueryParam("size") @DefaultValue("10") Integer size,
+                                            @QueryParam("db") @DefaultValue("false") Boolean db,
+                                            @QueryParam("desc") String desc) {
+        if (requestLog.sample(LOGGER, "workload")) {
+            requestLog.log(LOGGER, WORKLOAD_LOG, name, size, db, desc);
+        }
+        Workload selected = workloads.find(name).orElseThrow(() -> new NotFoundException("workload must be one of " + workloads.names()));
+        if (size < 0 || size > MAX_WORKLOAD_SIZE) {
+            throw new BadRequestException("size must be between 0 and " + MAX_WORKLOAD_SIZE);
         }
+        // Timed per workload, as workload/json, workload/regex...
+        String endpoint = "workload/" + selected.name().toLowerCase(Locale.ROOT);
+        return limiter.limitAsync(() -> metrics.recordAsync(endpoint, db, size,
+            () -> workload.supply(() -> runWorkload(endpoint, selected, size, db, desc)).thenCompose(Function.identity())), this::overloaded);
+    }
+
+    private CompletionStage<Response> runWorkload(String endpoint, Workload workload, int size, Boolean db, String desc) {
+        RequestTimings timings = RequestTimings.start();
+        long checksum = workload.run(size);
+        long computeNanos = timings.end("compute");
 
-        String msg = "Quarkus: Memory consumption is done with " + bites + " bites in " + Duration.between(start, Instant.now()).getNano() + " nano-seconds.";
+        CompletionStage<StatisticsWriter.Outcome> written = CompletableFuture.completedFuture(StatisticsWriter.Outcome.NONE);
         if (db) {
-            msg += " The result is persisted in the database.";
+            Statistics statistics = new Statistics();
+            statistics.type = workload.type();
+            statistics.parameter = Integer.toString(size);
+            statistics.duration = Duration.ofNanos(computeNanos);
+            statistics.description = desc;
+            written = writer.writeAsync(statistics);
         }
-        return msg;
+
+        return written.thenApply(outcome -> {
+            if (db) {
+                timings.end(outcome.phase());
+            }
+            StringBuilder msg = new StringBuilder(192).append(WORKLOAD_DONE).append(workload.name().toLowerCase(Locale.ROOT))
+                .append(" is done with ").append(size).append(" units (checksum ").append(checksum).append(") ");
+            timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+            appendOutcome(msg, outcome);
+            return timed(endpoint, msg, timings);
+        });
+    }
+
+    private Response timed(String endpoint, CharSequence msg, RequestTimings timings) {
+        histograms.record(endpoint, timings);
+        return Response.ok(text(msg)).header(RequestTimings.SERVER_TIMING, timings.serverTiming()).build();
+    }
+
+    private Response overloaded(long retryAfter) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, retryAfter)
+            .entity(text("Quarkus: too many requests in progress, retry in " + retryAfter + " seconds.")).build();
     }
-// end::adocMethodMemory[]
 
     /**
-     * Returns what's in the database.
+     * Tells whether the statistics of the request are in the database, or only queued for it in write-behind mode.
+     */
+    private static void appendOutcome(StringBuilder msg, StatisticsWriter.Outcome outcome) {
+        if (outcome == StatisticsWriter.Outcome.PERSISTED) {
+            msg.append(PERSISTED);
+        } else if (outcome == StatisticsWriter.Outcome.QUEUED) {
+            msg.append(QUEUED);
+        }
+    }
+
+    /**
+     * Encodes the text straight into a Vert.x buffer, written by {@link BufferWriter}, rather than into a String and
+     * then its bytes. The buffer is on the heap and not pooled: RESTEasy copies it into the pooled buffers of Vert.x.
+     */
+    private static Buffer text(CharSequence text) {
+        ByteBuf bytes = Unpooled.buffer(ByteBufUtil.utf8Bytes(text));
+        ByteBufUtil.writeUtf8(bytes, text);
+        return Buffer.buffer(bytes);
+    }
+
+    /**
+     * Returns what's in the database, one page at a time.
+     * The page is served from the cache until a Statistics is persisted, and a poll with the ETag of the
+     * previous response gets a 304 without touching the database. With {@code statistics.store.enabled}, the page is
+     * read from the rows of the local store, within their retention.
      * {@code curl 'localhost:8701/quarkus/stats'}
+     * {@code curl 'localhost:8701/quarkus/stats?after=1000&limit=100'}
+     * {@code curl -i -H 'If-None-Match: "<etag>"' 'localhost:8701/quarkus/stats'}
      *
+     * @param after the id of the last Statistics of the previous page.
+     * @param limit the maximum number of Statistics to return.
      * @return the list of Statistics.
      */
 // tag::adocMethodStats[]
     @GET
     @Path("/stats")
     @Produces(MediaType.APPLICATION_JSON)
-    public List<Statistics> stats() {
-        LOGGER.log(INFO, "Quarkus: retrieving statistics");
-        return Statistics.findAll().list();
+    public Response stats(@QueryParam("after") @DefaultValue("0") Long after,
+                          @QueryParam("limit") @DefaultValue("1000") Integer limit,
+                          @Context Request request) {
+        if (requestLog.sample(LOGGER, "stats")) {
+            requestLog.log(LOGGER, STATS_LOG, after, limit);
+        }
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return metrics.record("stats", true, size, () -> {
+            RequestTimings timings = RequestTimings.start();
+            Response.ResponseBuilder response = request.evaluatePreconditions(new EntityTag(cache.etag()));
+            if (response == null) {
+                StatisticsCache.Page page = cache.page(after, size, () -> {
+                    List<Statistics> statistics = store.enabled()
+                        ? store.page(after, size)
+                        : repository.page(after, size);
+                    timings.end("query");
+                    byte[] body = jsonb.toJson(statistics).getBytes(StandardCharsets.UTF_8);
+                    timings.end("serialize");
+                    return body;
+                });
+                // A shared load gives the page of an older version, which the client may already have
+                response = request.evaluatePreconditions(new EntityTag(page.etag()));
+                if (response == null) {
+                    response = Response.ok(page.body()).tag(page.etag());
+                }
+            }
+            histograms.record("stats", timings);
+            return response.header(RequestTimings.SERVER_TIMING, timings.serverTiming()).build();
+        });
     }
 // end::adocMethodStats[]
+
+    /**
+     * Returns count, mean, percentiles and max of the durations, in milliseconds, computed by the database, or with
+     * {@code statistics.store.enabled} from the 1-minute and 1-hour aggregates of the local store.
+     * {@code curl 'localhost:8701/quarkus/stats/summary'}
+     * {@code curl 'localhost:8701/quarkus/stats/summary?bucket=minute'}
+     *
+     * @param bucket the time bucket of done_at to group by: minute, hour or day.
+     * @return the summary per type, parameter, description and time bucket.
+     */
+    @GET
+    @Path("/stats/summary")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<StatisticsSummary> summary(@QueryParam("bucket") @DefaultValue("hour") String bucket) {
+        if (requestLog.sample(LOGGER, "summary")) {
+            requestLog.log(LOGGER, SUMMARY_LOG, bucket);
+        }
+        if (!BUCKETS.contains(bucket)) {
+            throw new BadRequestException("bucket must be one of " + BUCKETS);
+        }
+        return store.enabled() ? store.summary(bucket) : repository.summary(bucket);
+    }
+
+    /**
+     * Streams what's in the database, as NDJSON or as a JSON array, without loading it in memory.
+     * {@code curl 'localhost:8701/quarkus/stats/stream'}
+     * {@code curl 'localhost:8701/quarkus/stats/stream?after=1000&format=json'}
+     *
+     * @param after  the id after which to start streaming.
+     * @param format either ndjson or json.
+     * @return the stream of Statistics.
+     */
+    @GET
+    @Path("/stats/stream")
+    @Produces({APPLICATION_NDJSON, MediaType.APPLICATION_JSON})
+    public Response streamStats(@QueryParam("after") @DefaultValue("0") Long after,
+                                @QueryParam("format") @DefaultValue("ndjson") String format) {
+        if (requestLog.sample(LOGGER, "stream")) {
+            requestLog.log(LOGGER, STREAM_LOG, after, format);
+        }
+        boolean array = "json".equals(format);
+        StreamingOutput body = output -> {
+            Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            out.write(array ? "[" : "");
+            try {
+                boolean[] first = {true};
+                repository.forEachAfter(after, statistics -> {
+                    try {
+                        if (array && !first[0]) {
+                            out.write(',');
+                        }
+                        out.write(jsonb.toJson(statistics));
+                        out.write(array ? "" : "\n");
+                        first[0] = false;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.write(array ? "]" : "");
+            out.flush();
+        };
+        return Response.ok(body, array ? MediaType.APPLICATION_JSON : APPLICATION_NDJSON).build();
+    }
+
+    /**
+     * Inserts statistics sent as NDJSON or as a JSON array, for example the output of /stats/stream, in chunks of
+     * {@code statistics.batch.chunk-size} rows, each in its own transaction.
+     * {@code curl -X POST -H 'Content-Type: application/x-ndjson' --data-binary @stats.ndjson 'localhost:8701/quarkus/stats/batch'}
+     * {@code curl -X POST -H 'Content-Type: application/json' --data-binary @stats.json 'localhost:8701/quarkus/stats/batch'}
+     *
+     * @param headers the headers, whose Content-Type tells the format of the body.
+     * @param body    the statistics, read as they are inserted.
+     * @return the number of statistics inserted.
+     */
+    @POST
+    @Path("/stats/batch")
+    @Consumes({APPLICATION_NDJSON, MediaType.APPLICATION_JSON})
+    @Produces(MediaType.APPLICATION_JSON)
+    public StatisticsLoader.Result loadStats(@Context HttpHeaders headers, InputStream body) throws IOException {
+        boolean array = MediaType.APPLICATION_JSON_TYPE.isCompatible(headers.getMediaType());
+        if (requestLog.sample(LOGGER, "batch")) {
+            requestLog.log(LOGGER, BATCH_LOG, array ? "json" : "ndjson");
+        }
+        try {
+            return loader.load(body, array);
+        } catch (IllegalArgumentException e) {
+            // The message tells how many statistics were inserted before the invalid one
+            throw new BadRequestException(Response.status(Response.Status.BAD_REQUEST)
+                .type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build());
+        }
+    }
+
+    /**
+     * Returns the percentiles, in milliseconds, of the phases of the cpu, memory and stats requests since the start.
+     * {@code curl 'localhost:8701/quarkus/timings'}
+     *
+     * @return the percentiles and histogram of each phase of each endpoint.
+     */
+    @GET
+    @Path("/timings")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Map<String, TimingHistograms.Summary>> timings() {
+        return histograms.snapshot();
+    }
+
+    /**
+     * Returns the queue depth and flush latency of the statistics writer.
+     * {@code curl 'localhost:8701/quarkus/stats/writer'}
+     *
+     * @return the writer metrics.
+     */
+    @GET
+    @Path("/stats/writer")
+    @Produces(MediaType.APPLICATION_JSON)
+    public StatisticsWriter.Metrics writerMetrics() {
+        return writer.metrics();
+    }
 }
@@ -0,0 +1,66 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.pgclient.PgPool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Inserts {@link Statistics} with the Vert.x reactive PostgreSQL client, on the event loop,
+ * pipelining the inserts of concurrent requests on the pooled connections.
+ */
+@ApplicationScoped
+public class ReactiveStatisticsRepository {
+
+    private static final String NEXT_ID_BLOCK = "select nextval('statistics_quarkus_seq')";
+    private static final String INSERT = "insert into Statistics_Quarkus (id, description, done_at, duration, framework, parameter, type)"
+        + " values ($1, $2, $3, $4, $5, $6, $7)";
+    // Same block of ids per sequence value as the pooled-lo optimizer of Hibernate, so the ids never collide
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final Instance<PgPool> pool;
+    private long nextId;
+    private long lastId = -1;
+
+    public ReactiveStatisticsRepository(Instance<PgPool> pgPool) {
+        this.pool = pgPool;
+    }
+
+    public Uni<Void> persist(Statistics statistics) {
+        return nextId()
+            .chain(id -> {
+                statistics.id = id;
+                return pool.get().preparedQuery(INSERT).execute(Tuple.from(Arrays.asList(
+                    id,
+                    statistics.description,
+                    OffsetDateTime.ofInstant(statistics.doneAt, ZoneOffset.UTC),
+                    statistics.duration == null ? null : statistics.duration.toNanos(),
+                    (short) statistics.framework.ordinal(),
+                    statistics.parameter,
+                    (short) statistics.type.ordinal())));
+            })
+            .replaceWithVoid();
+    }
+
+    private Uni<Long> nextId() {
+        synchronized (this) {
+            if (nextId <= lastId) {
+                return Uni.createFrom().item(nextId++);
+            }
+        }
+        return pool.get().query(NEXT_ID_BLOCK).execute()
+            .map(rows -> {
+                long first = rows.iterator().next().getLong(0);
+                synchronized (this) {
+                    nextId = first;
+                    lastId = first + ALLOCATION_SIZE - 1;
+                    return nextId++;
+                }
+            });
+    }
+}
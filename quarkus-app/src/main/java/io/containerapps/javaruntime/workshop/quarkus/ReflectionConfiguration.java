@@ -0,0 +1,15 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Registers the statistics for reflection in a native image: the cache, the stream and the batch load serialize them
+ * with Jsonb, which Quarkus can't detect.
+ * Kept off the entity, whose sources are also compiled by the JMH benchmarks without Quarkus.
+ */
+@RegisterForReflection(targets = {Statistics.class, Type.class, Framework.class})
+final class ReflectionConfiguration {
+
+    private ReflectionConfiguration() {
+    }
+}
@@ -0,0 +1,251 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.lang.System.Logger;
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Logs the requests at INFO, one in {@code workload.log.sample-every} at random, or one in the value of their endpoint
+ * in {@code workload.log.endpoint-sample-every}. {@link #sample} is checked before {@link #log}, so the requests that
+ * are not logged don't box and format its arguments.
+ * In async mode the requests are queued in a bounded ring buffer, and a background thread, {@code request-log}, logs them
+ * as JSON records through the same logger, so the request threads never wait for the console. The record holds the
+ * framework, the endpoint, the thread of the request and its named {@link Format#fields}. When the buffer is full,
+ * they are dropped.
+ */
+@Singleton
+public class RequestLog {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+    private static final String FRAMEWORK = "quarkus";
+    private static final int BATCH_SIZE = 256;
+
+    private final int sampleEvery;
+    private final Map<String, Integer> endpointSampleEvery;
+    private final boolean async;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public RequestLog(MeterRegistry registry,
+                      @ConfigProperty(name = "workload.log.sample-every", defaultValue = "1") int sampleEvery,
+                      @ConfigProperty(name = "workload.log.endpoint-sample-every") Optional<String> endpointSampleEvery,
+                      @ConfigProperty(name = "workload.log.async.enabled", defaultValue = "false") boolean async,
+                      @ConfigProperty(name = "workload.log.async.queue-capacity", defaultValue = "8192") int queueCapacity) {
+        this.sampleEvery = sampleEvery;
+        this.endpointSampleEvery = parse(endpointSampleEvery.orElse(""));
+        this.async = async;
+        this.queue = new ArrayBlockingQueue<>(async ? queueCapacity : 1);
+        if (async) {
+            LOGGER.log(INFO, "Quarkus: logging the requests in the background, with a buffer of {0}", queueCapacity);
+            writer = new Thread(this::drain, "request-log");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+        Gauge.builder("workload.log.queued", queue, BlockingQueue::size)
+            .description("Request logs waiting to be written")
+            .tag("framework", FRAMEWORK)
+            .register(registry);
+        FunctionCounter.builder("workload.log.dropped", dropped, AtomicLong::get)
+            .description("Request logs dropped because the buffer was full")
+            .tag("framework", FRAMEWORK)
+            .register(registry);
+    }
+
+    /**
+     * @return true if the request is to be logged, false if it is not sampled or INFO is disabled for the logger.
+     */
+    public boolean sample(Logger logger, String endpoint) {
+        int every = endpointSampleEvery.getOrDefault(endpoint, sampleEvery);
+        return logger.isLoggable(INFO) && (every == 1 || every > 1 && ThreadLocalRandom.current().nextInt(every) == 0);
+    }
+
+    /**
+     * Logs the request, as a line in sync mode and as a JSON record in async mode.
+     *
+     * @param params the values of the fields of the format, in order.
+     */
+    public void log(Logger logger, Format format, Object... params) {
+        if (!async) {
+            logger.log(INFO, format.pattern(), params);
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), Thread.currentThread().getName(), logger, format, params);
+        if (!running || !queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(1000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        // A writer still busy after the timeout logs the rest itself, logging it here as well could reorder the lines
+        if (!writer.isAlive()) {
+            List<Entry> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            write(remaining, new StringBuilder());
+        }
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder json = new StringBuilder(256);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                write(batch, json);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void write(List<Entry> batch, StringBuilder json) {
+        for (Entry entry : batch) {
+            // Without parameters the message is not parsed as a MessageFormat, so the braces of the JSON are kept
+            entry.logger().log(INFO, entry.appendJson(json).toString());
+            json.setLength(0);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Parses {@code hello:100,cpu:10}, the endpoints that are not listed use {@code workload.log.sample-every}.
+     */
+    static Map<String, Integer> parse(String endpointSampleEvery) {
+        Map<String, Integer> sampling = new HashMap<>();
+        for (String endpoint : endpointSampleEvery.split(",")) {
+            if (endpoint.isBlank()) {
+                continue;
+            }
+            String[] nameAndEvery = endpoint.split(":");
+            if (nameAndEvery.length != 2) {
+                throw new IllegalArgumentException("workload.log.endpoint-sample-every must look like hello:100,cpu:10, not " + endpointSampleEvery);
+            }
+            sampling.put(nameAndEvery[0].trim(), Integer.parseInt(nameAndEvery[1].trim()));
+        }
+        return sampling;
+    }
+
+    /**
+     * The line of a request, {@code Quarkus: cpu: {iterations} {db}}, whose placeholders name the fields of its JSON
+     * record. They are numbered in {@link #pattern}, the {@link MessageFormat} logged in sync mode.
+     */
+    public record Format(String endpoint, String pattern, List<String> fields) {
+
+        public static Format of(String endpoint, String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder pattern = new StringBuilder(line.length());
+            int start = 0;
+            for (int open = line.indexOf('{'); open >= 0; open = line.indexOf('{', start)) {
+                int close = line.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("The placeholder at " + open + " is not closed in " + line);
+                }
+                String field = line.substring(open + 1, close);
+                int index = fields.indexOf(field);
+                if (index < 0) {
+                    index = fields.size();
+                    fields.add(field);
+                }
+                pattern.append(line, start, open).append('{').append(index).append('}');
+                start = close + 1;
+            }
+            pattern.append(line, start, line.length());
+            return new Format(endpoint, pattern.toString(), List.copyOf(fields));
+        }
+    }
+
+    private record Entry(long millis, String thread, Logger logger, Format format, Object[] params) {
+
+        StringBuilder appendJson(StringBuilder json) {
+            json.append("{\"timestamp\":\"").append(Instant.ofEpochMilli(millis)).append("\",\"framework\":\"").append(FRAMEWORK)
+                .append("\",\"endpoint\":");
+            appendString(json, format.endpoint()).append(",\"thread\":");
+            appendString(json, thread);
+            List<String> fields = format.fields();
+            for (int i = 0; i < fields.size() && i < params.length; i++) {
+                appendString(json.append(','), fields.get(i)).append(':');
+                appendValue(json, params[i]);
+            }
+            json.append(",\"message\":");
+            return appendString(json, MessageFormat.format(format.pattern(), params)).append('}');
+        }
+
+        private static void appendValue(StringBuilder json, Object value) {
+            if (value == null || value instanceof Boolean || value instanceof Integer || value instanceof Long) {
+                json.append(value);
+            } else {
+                appendString(json, value.toString());
+            }
+        }
+
+        private static StringBuilder appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        json.append("\\\"");
+                        break;
+                    case '\\':
+                        json.append("\\\\");
+                        break;
+                    case '\n':
+                        json.append("\\n");
+                        break;
+                    case '\r':
+                        json.append("\\r");
+                        break;
+                    case '\t':
+                        json.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            json.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            return json.append('"');
+        }
+    }
+}
@@ -5,6 +5,8 @@ import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import java.time.Duration;
 import java.time.Instant;
 
@@ -17,12 +19,14 @@ public class Statistics extends PanacheEntity {
     public Framework framework = Framework.QUARKUS;
     public Type type;
     public String parameter;
+    @JdbcTypeCode(SqlTypes.BIGINT)
     public Duration duration;
     public String description;
 }
 
+// Persisted by ordinal: new types go at the end
 enum Type {
-    CPU, MEMORY
+    CPU, MEMORY, JSON, REGEX, SORT, HASH, GZIP, FILE
 }
 
 enum Framework {
@@ -0,0 +1,251 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import jakarta.inject.Singleton;
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbException;
+import jakarta.json.stream.JsonLocation;
+import jakarta.json.stream.JsonParser;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.yasson.YassonJsonb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.System.Logger;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Loads statistics sent as NDJSON or as a JSON array, parsing them one at a time and inserting them in chunks,
+ * each chunk in its own transaction with JDBC batching.
+ * The ids are ignored and generated again, the chunks inserted before an invalid statistics stay in the database.
+ */
+@Singleton
+public class StatisticsLoader {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    private final StatisticsRepository repository;
+    private final StatisticsCache cache;
+    private final StatisticsStore store;
+    private final YassonJsonb jsonb;
+    private final int chunkSize;
+
+    public StatisticsLoader(StatisticsRepository repository, StatisticsCache cache, StatisticsStore store, Jsonb jsonb,
+                            @ConfigProperty(name = "statistics.batch.chunk-size", defaultValue = "1000") int chunkSize) {
+        this.repository = repository;
+        this.cache = cache;
+        this.store = store;
+        // Yasson binds straight from a parser, which the Jsonb API can't
+        this.jsonb = (YassonJsonb) jsonb;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param array true for a JSON array, false for NDJSON.
+     * @throws IllegalArgumentException if the body is not valid, after inserting the chunks before the invalid statistics.
+     */
+    public Result load(InputStream body, boolean array) throws IOException {
+        Chunks chunks = new Chunks();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        try {
+            if (array) {
+                loadArray(reader, chunks);
+            } else {
+                loadLines(reader, chunks);
+            }
+        } catch (JsonException | JsonbException | IllegalArgumentException e) {
+            chunks.flush();
+            throw new IllegalArgumentException("invalid statistics #" + (chunks.inserted + 1) + ", the " + chunks.inserted
+                + " previous ones are inserted: " + e.getMessage(), e);
+        }
+        chunks.flush();
+        Result result = chunks.result();
+        LOGGER.log(INFO, "Quarkus: loaded {0} statistics in {1} chunks in {2} ms", result.inserted(), result.chunks(), result.millis());
+        return result;
+    }
+
+    private void loadLines(BufferedReader reader, Chunks chunks) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank()) {
+                chunks.add(jsonb.fromJson(line, Statistics.class));
+            }
+        }
+    }
+
+    private void loadArray(Reader reader, Chunks chunks) {
+        try (PeekingParser parser = new PeekingParser(Json.createParser(reader))) {
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_ARRAY) {
+                throw new JsonException("expected an array of statistics");
+            }
+            while (parser.hasNext()) {
+                JsonParser.Event event = parser.peek();
+                if (event == JsonParser.Event.END_ARRAY) {
+                    return;
+                }
+                if (event != JsonParser.Event.START_OBJECT) {
+                    throw new JsonException("expected a statistics object but got " + event);
+                }
+                chunks.add(jsonb.fromJson(parser, Statistics.class));
+            }
+            throw new JsonException("unterminated array of statistics");
+        }
+    }
+
+    /**
+     * Accumulates the statistics and inserts them every {@code chunkSize}.
+     */
+    private final class Chunks {
+
+        private final long start = System.nanoTime();
+        private final List<Statistics> chunk = new ArrayList<>(chunkSize);
+        private long inserted;
+        private int count;
+
+        void add(Statistics statistics) {
+            if (statistics.doneAt == null || statistics.framework == null) {
+                throw new IllegalArgumentException("doneAt and framework can't be null");
+            }
+            statistics.id = null;
+            chunk.add(statistics);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            repository.persist(chunk);
+            cache.invalidate();
+            chunk.forEach(store::append);
+            inserted += chunk.size();
+            count++;
+            chunk.clear();
+        }
+
+        Result result() {
+            return new Result(inserted, count, Math.round((System.nanoTime() - start) / 1_000.0) / 1_000.0);
+        }
+    }
+
+    /**
+     * Lets the next event be read before Yasson, which expects to read the {@code START_OBJECT} of what it binds itself.
+     */
+    private static final class PeekingParser implements JsonParser {
+
+        private final JsonParser parser;
+        private Event peeked;
+
+        private PeekingParser(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        Event peek() {
+            if (peeked == null) {
+                peeked = parser.next();
+            }
+            return peeked;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peeked != null || parser.hasNext();
+        }
+
+        @Override
+        public Event next() {
+            if (peeked == null) {
+                return parser.next();
+            }
+            Event event = peeked;
+            peeked = null;
+            return event;
+        }
+
+        @Override
+        public Event currentEvent() {
+            return peeked == null ? parser.currentEvent() : peeked;
+        }
+
+        @Override
+        public String getString() {
+            return parser.getString();
+        }
+
+        @Override
+        public boolean isIntegralNumber() {
+            return parser.isIntegralNumber();
+        }
+
+        @Override
+        public int getInt() {
+            return parser.getInt();
+        }
+
+        @Override
+        public long getLong() {
+            return parser.getLong();
+        }
+
+        @Override
+        public BigDecimal getBigDecimal() {
+            return parser.getBigDecimal();
+        }
+
+        @Override
+        public JsonLocation getLocation() {
+            return parser.getLocation();
+        }
+
+        @Override
+        public JsonObject getObject() {
+            return parser.getObject();
+        }
+
+        @Override
+        public JsonValue getValue() {
+            return parser.getValue();
+        }
+
+        @Override
+        public JsonArray getArray() {
+            return parser.getArray();
+        }
+
+        @Override
+        public void skipObject() {
+            parser.skipObject();
+        }
+
+        @Override
+        public void skipArray() {
+            parser.skipArray();
+        }
+
+        @Override
+        public void close() {
+            parser.close();
+        }
+    }
+
+    /**
+     * The number of statistics inserted, in how many chunks and how many milliseconds.
+     */
+    public record Result(long inserted, int chunks, double millis) {
+    }
+}
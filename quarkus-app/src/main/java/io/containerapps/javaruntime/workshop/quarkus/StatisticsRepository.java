@@ -1,11 +1,51 @@
 package io.containerapps.javaruntime.workshop.quarkus;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Sort;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.transaction.Transactional;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @ApplicationScoped
 @Transactional
 public class StatisticsRepository implements PanacheRepository<Statistics> {
+
+    private static final int FETCH_SIZE = 500;
+    private static final String SUMMARY_QUERY = StatisticsSummary.query("Statistics_Quarkus");
+
+    /**
+     * Returns at most {@code limit} statistics with an id greater than {@code after}.
+     */
+    public List<Statistics> page(long after, int limit) {
+        return find("id > ?1", Sort.by("id"), after).range(0, limit - 1).list();
+    }
+
+    /**
+     * Reads the statistics with an id greater than {@code after} through a server-side cursor,
+     * detaching each row once consumed so the persistence context stays small.
+     */
+    public void forEachAfter(long after, Consumer<Statistics> action) {
+        try (Stream<Statistics> rows = find("id > ?1", Sort.by("id"), after).withHint(HINT_FETCH_SIZE, FETCH_SIZE).stream()) {
+            rows.forEach(statistics -> {
+                action.accept(statistics);
+                getEntityManager().detach(statistics);
+            });
+        }
+    }
+
+    /**
+     * Aggregates the durations in SQL, grouped by type, parameter, description and {@code bucket} of done_at.
+     */
+    @SuppressWarnings("unchecked")
+    public List<StatisticsSummary> summary(String bucket) {
+        List<Object[]> rows = getEntityManager().createNativeQuery(SUMMARY_QUERY)
+            .setParameter("bucket", bucket)
+            .getResultList();
+        return rows.stream().map(StatisticsSummary::of).toList();
+    }
 }
@@ -0,0 +1,74 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import jakarta.inject.Singleton;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates the phases of the requests, per endpoint and phase, in HdrHistograms of nanoseconds
+ * with 3 significant digits, so percentiles are exact to 0.1% whatever the range of the durations.
+ */
+@Singleton
+public class TimingHistograms {
+
+    static final String TOTAL = "total";
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    // endpoint -> phase -> histogram
+    private final Map<String, Map<String, Histogram>> histograms = new ConcurrentHashMap<>();
+
+    public void record(String endpoint, RequestTimings timings) {
+        Map<String, Histogram> phases = histograms.computeIfAbsent(endpoint, k -> new ConcurrentHashMap<>());
+        timings.forEachPhase((phase, nanos) -> histogram(phases, phase).recordValue(nanos));
+        histogram(phases, TOTAL).recordValue(timings.stop());
+    }
+
+    /**
+     * @return the percentiles of each phase of each endpoint since the start of the app.
+     */
+    public Map<String, Map<String, Summary>> snapshot() {
+        Map<String, Map<String, Summary>> snapshot = new TreeMap<>();
+        histograms.forEach((endpoint, phases) -> {
+            Map<String, Summary> summaries = new TreeMap<>();
+            phases.forEach((phase, histogram) -> summaries.put(phase, Summary.of(histogram.copy())));
+            snapshot.put(endpoint, summaries);
+        });
+        return snapshot;
+    }
+
+    private static Histogram histogram(Map<String, Histogram> phases, String phase) {
+        return phases.computeIfAbsent(phase, k -> new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+    }
+
+    /**
+     * Percentiles of a phase in milliseconds, and the histogram itself, compressed and in Base64,
+     * so the histograms of several instances can be added up before computing percentiles.
+     */
+    public record Summary(long count, double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+                          double p999Millis, double maxMillis, String histogram) {
+
+        static Summary of(Histogram histogram) {
+            ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+            int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+            return new Summary(histogram.getTotalCount(),
+                millis(histogram.getMean()),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()),
+                Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+        }
+
+        private static double millis(double nanos) {
+            return Math.round(nanos / 1_000) / 1_000.0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.lang.System.Logger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Runs the blocking workloads on a virtual thread per request when {@code workload.virtual-threads.enabled} is set
+ * and the JVM supports it, otherwise on the calling worker thread.
+ */
+@Singleton
+public class WorkloadExecutor {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    private final ExecutorService executor;
+
+    public WorkloadExecutor(@ConfigProperty(name = "workload.virtual-threads.enabled", defaultValue = "false") boolean virtualThreads) {
+        if (!virtualThreads) {
+            executor = null;
+        } else {
+            executor = VirtualThreads.newExecutor("workload-virtual-").orElse(null);
+            if (executor == null) {
+                LOGGER.log(WARNING, "Quarkus: virtual threads are not supported by this JVM, running workloads on worker threads");
+            } else {
+                LOGGER.log(INFO, "Quarkus: running workloads on virtual threads");
+            }
+        }
+    }
+
+    public <T> CompletionStage<T> supply(Supplier<T> workload) {
+        if (executor == null) {
+            try {
+                return CompletableFuture.completedFuture(workload.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(workload, executor);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
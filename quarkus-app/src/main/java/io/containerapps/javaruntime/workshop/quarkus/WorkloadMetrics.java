@@ -0,0 +1,113 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.inject.Singleton;
+
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Times the requests in histograms tagged by framework, endpoint, db flag and size bucket,
+ * and counts the ones in progress.
+ */
+@Singleton
+public class WorkloadMetrics {
+
+    static final long NO_SIZE = -1;
+    private static final String FRAMEWORK = "quarkus";
+    private static final String[] BUCKETS = {"none", "1", "10", "100", "1000", "+Inf"};
+
+    private final MeterRegistry registry;
+    private final AtomicInteger active = new AtomicInteger();
+    // endpoint -> timers, by db flag and size bucket
+    private final Map<String, AtomicReferenceArray<Timer>> timers = new ConcurrentHashMap<>();
+
+    public WorkloadMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("workload.active", active, AtomicInteger::get)
+            .description("Requests in progress")
+            .tag("framework", FRAMEWORK)
+            .register(registry);
+    }
+
+    /**
+     * Runs the request and records its duration.
+     *
+     * @param size the iterations or bites of the request, or {@link #NO_SIZE}.
+     */
+    public <T> T record(String endpoint, boolean db, long size, Supplier<T> request) {
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return request.get();
+        } finally {
+            stop(endpoint, db, size, start);
+        }
+    }
+
+    /**
+     * Runs the request and records its duration once the returned stage completes.
+     */
+    public <T> CompletionStage<T> recordAsync(String endpoint, boolean db, long size, Supplier<CompletionStage<T>> request) {
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        CompletionStage<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            stop(endpoint, db, size, start);
+            throw e;
+        }
+        return response.whenComplete((result, failure) -> stop(endpoint, db, size, start));
+    }
+
+    private void stop(String endpoint, boolean db, long size, long start) {
+        active.decrementAndGet();
+        timer(endpoint, db, size).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the timer of the tags, registered on the first request instead of looked up by its tags on every one.
+     */
+    private Timer timer(String endpoint, boolean db, long size) {
+        AtomicReferenceArray<Timer> endpointTimers = timers.computeIfAbsent(endpoint, k -> new AtomicReferenceArray<>(2 * BUCKETS.length));
+        int bucket = bucket(size);
+        int index = (db ? BUCKETS.length : 0) + bucket;
+        Timer timer = endpointTimers.get(index);
+        if (timer == null) {
+            // Two requests may register it at the same time, the registry returns the same timer to both
+            timer = Timer.builder("workload.requests")
+                .description("Duration of the requests")
+                .tags("framework", FRAMEWORK, "endpoint", endpoint, "db", Boolean.toString(db), "size", BUCKETS[bucket])
+                .publishPercentileHistogram()
+                .register(registry);
+            endpointTimers.set(index, timer);
+        }
+        return timer;
+    }
+
+    /**
+     * Rounds the size up to a power of ten, so the number of series stays small.
+     *
+     * @return the index of the size tag in {@link #BUCKETS}.
+     */
+    static int bucket(long size) {
+        if (size < 0) {
+            return 0;
+        }
+        int bucket = 1;
+        for (long bound = 1; bound <= 1000; bound *= 10, bucket++) {
+            if (size <= bound) {
+                return bucket;
+            }
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,154 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The built-in workloads, on the JDK only. Their input is generated once from a fixed seed: 1,000 lines of an access
+ * log, and the first 64 KiB of them as a payload.
+ */
+enum Workloads implements Workload {
+
+    /**
+     * Parses the 1,000 lines of the access log with a regular expression, and sums their status and size.
+     */
+    REGEX {
+        @Override
+        public long run(int size) {
+            long checksum = 0;
+            Matcher matcher = ACCESS_LOG_LINE.matcher("");
+            for (int unit = 0; unit < size; unit++) {
+                for (String line : LINES) {
+                    if (matcher.reset(line).matches()) {
+                        checksum += Integer.parseInt(matcher.group(5)) + Long.parseLong(matcher.group(6)) + matcher.group(4).length();
+                    }
+                }
+            }
+            return checksum;
+        }
+    },
+
+    /**
+     * Sorts 10,000 random longs.
+     */
+    SORT {
+        @Override
+        public long run(int size) {
+            long checksum = 0;
+            long[] values = new long[10_000];
+            for (int unit = 0; unit < size; unit++) {
+                SplittableRandom random = new SplittableRandom(unit);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = random.nextLong();
+                }
+                Arrays.sort(values);
+                checksum ^= values[unit % values.length];
+            }
+            return checksum;
+        }
+    },
+
+    /**
+     * Computes the SHA-256 of the payload.
+     */
+    HASH {
+        @Override
+        public long run(int size) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            long checksum = 0;
+            for (int unit = 0; unit < size; unit++) {
+                checksum ^= digest.digest(PAYLOAD)[unit % 32];
+            }
+            return checksum;
+        }
+    },
+
+    /**
+     * Compresses the payload with gzip, then decompresses it.
+     */
+    GZIP {
+        @Override
+        public long run(int size) {
+            long checksum = 0;
+            try {
+                for (int unit = 0; unit < size; unit++) {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream(PAYLOAD.length / 4);
+                    try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                        out.write(PAYLOAD);
+                    }
+                    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                        checksum += compressed.size() + in.readAllBytes().length;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return checksum;
+        }
+    },
+
+    /**
+     * Writes the payload to a temporary file, then reads it back, through the page cache (no fsync).
+     */
+    FILE {
+        @Override
+        public long run(int size) {
+            long checksum = 0;
+            try {
+                Path file = Files.createTempFile("workload-", ".tmp");
+                try {
+                    for (int unit = 0; unit < size; unit++) {
+                        Files.write(file, PAYLOAD);
+                        checksum += Files.readAllBytes(file)[unit % PAYLOAD.length];
+                    }
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return checksum;
+        }
+    };
+
+    private static final Pattern ACCESS_LOG_LINE = Pattern.compile("^(\\S+) \\S+ \\S+ \\[([^]]+)] \"(\\w+) ([^ ]+) [^\"]*\" (\\d{3}) (\\d+)$");
+    private static final String[] LINES = new String[1000];
+    private static final byte[] PAYLOAD = new byte[64 * 1024];
+
+    static {
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < LINES.length; i++) {
+            LINES[i] = String.format(Locale.ROOT, "10.0.%d.%d - - [18/Oct/2026:01:%02d:%02d +0000] \"GET /quarkus/cpu?iterations=%d&db=%b HTTP/1.1\" %d %d",
+                random.nextInt(256), random.nextInt(256), random.nextInt(60), random.nextInt(60),
+                random.nextInt(1000), random.nextBoolean(), random.nextInt(10) == 0 ? 503 : 200, random.nextInt(100_000));
+            log.append(LINES[i]).append('\n');
+        }
+        byte[] bytes = log.toString().getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, PAYLOAD, 0, Math.min(bytes.length, PAYLOAD.length));
+    }
+
+    @Override
+    public Type type() {
+        return Type.valueOf(name());
+    }
+}
@@ -0,0 +1,148 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.configuration.supplier.AgroalDataSourceConfigurationSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class CheckpointRestoreTest {
+
+    private AgroalDataSource dataSource;
+
+    @BeforeEach
+    void pool() throws Exception {
+        FakeDataSource.OPEN.set(0);
+        dataSource = AgroalDataSource.from(new AgroalDataSourceConfigurationSupplier()
+            .metricsEnabled(true)
+            .connectionPoolConfiguration(pool -> pool
+                .initialSize(2)
+                .minSize(2)
+                .maxSize(4)
+                .connectionFactoryConfiguration(factory -> factory.connectionProviderClass(FakeDataSource.class))));
+        awaitCount(FakeDataSource.OPEN::get, 2);
+    }
+
+    @AfterEach
+    void close() {
+        dataSource.close();
+    }
+
+    @Test
+    void testCheckpointRestore() throws Exception {
+        CheckpointRestore checkpointRestore = new CheckpointRestore(dataSource);
+
+        checkpointRestore.beforeCheckpoint(null);
+        assertThat(dataSource.getConfiguration().connectionPoolConfiguration().minSize(), is(0));
+        assertThat(dataSource.getMetrics().activeCount() + dataSource.getMetrics().availableCount(), is(0L));
+        awaitCount(FakeDataSource.OPEN::get, 0);
+
+        checkpointRestore.afterRestore(null);
+        assertThat(dataSource.getConfiguration().connectionPoolConfiguration().minSize(), is(2));
+        awaitCount(FakeDataSource.OPEN::get, 2);
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(connection.isValid(1), is(true));
+        }
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsInt() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(count.getAsInt(), is(expected));
+    }
+
+    /**
+     * Hands out connections that do nothing, and counts the ones that are open.
+     * Agroal creates it through its no-argument constructor, so the count is static.
+     */
+    public static class FakeDataSource implements DataSource {
+
+        static final AtomicInteger OPEN = new AtomicInteger();
+
+        @Override
+        public Connection getConnection() {
+            OPEN.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        if (closed.compareAndSet(false, true)) {
+                            OPEN.decrementAndGet();
+                        }
+                        yield null;
+                    }
+                    case "isClosed" -> closed.get();
+                    case "isValid" -> !closed.get();
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "FakeConnection";
+                    default -> defaultValue(method.getReturnType());
+                });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (type == boolean.class) {
+                return false;
+            } else if (type == int.class) {
+                return 0;
+            } else if (type == long.class) {
+                return 0L;
+            }
+            return null;
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> type) throws SQLException {
+            throw new SQLException("Not a wrapper");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> type) {
+            return false;
+        }
+    }
+}
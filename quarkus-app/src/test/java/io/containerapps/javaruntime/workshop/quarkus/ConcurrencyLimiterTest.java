@@ -0,0 +1,66 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConcurrencyLimiterTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testRejectsOverTheLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+
+        String response = limiter.limitAsync(() -> limiter.limitAsync(() -> CompletableFuture.completedFuture("accepted"), retryAfter -> "retry in " + retryAfter),
+            retryAfter -> "rejected").toCompletableFuture().join();
+        assertThat(response, is("retry in 1"));
+        assertThat(accepted(limiter), is("accepted"));
+        assertThat(registry.get("workload.limiter.rejected").functionCounter().count(), is(1.0));
+        assertThat(registry.get("workload.limiter.limit").gauge().value(), is(1.0));
+    }
+
+    @Test
+    void testHoldsThePermitUntilTheResponseCompletes() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletionStage<String> response = limiter.limitAsync(() -> pending, retryAfter -> "rejected");
+        assertThat(accepted(limiter), is("rejected"));
+
+        pending.complete("done");
+        assertThat(response.toCompletableFuture().join(), is("done"));
+        assertThat(accepted(limiter), is("accepted"));
+    }
+
+    @Test
+    void testReleasesThePermitWhenTheRequestThrows() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+
+        assertThrows(IllegalStateException.class, () -> limiter.limitAsync(() -> {
+            throw new IllegalStateException("failed");
+        }, retryAfter -> "rejected"));
+        assertThat(accepted(limiter), is("accepted"));
+    }
+
+    @Test
+    void testDisabled() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, false, 1, 1, 1, 0);
+
+        String response = limiter.limitAsync(() -> limiter.limitAsync(() -> CompletableFuture.completedFuture("accepted"), retryAfter -> "rejected"),
+            retryAfter -> "rejected").toCompletableFuture().join();
+        assertThat(response, is("accepted"));
+        assertThat(registry.get("workload.limiter.rejected").functionCounter().count(), is(0.0));
+    }
+
+    private static String accepted(ConcurrencyLimiter limiter) {
+        return limiter.limitAsync(() -> CompletableFuture.completedFuture("accepted"), retryAfter -> "rejected").toCompletableFuture().join();
+    }
+}
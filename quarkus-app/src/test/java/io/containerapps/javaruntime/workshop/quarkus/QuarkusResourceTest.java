@@ -2,15 +2,26 @@
 package io.containerapps.javaruntime.workshop.quarkus;
 
 import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 
 @QuarkusTest
 class QuarkusResourceTest {
 // end::adocHeader[]
 
+    @Inject
+    StatisticsRepository repository;
+
 // tag::adocTestHello[]
     @Test
     void testHelloEndpoint() {
@@ -88,6 +99,62 @@ class QuarkusResourceTest {
     }
 // end::adocTestMemory[]
 
+    @Test
+    void testMemoryWithStrategyEndpoint() {
+        given().param("bites", 1).param("strategy", "direct")
+          .when().get("/quarkus/memory")
+          .then()
+            .statusCode(200)
+            .body(startsWith("Quarkus: Memory consumption is done with 1 bites using direct"))
+            .body(endsWith("nano-seconds."));
+    }
+
+    @Test
+    void testMemoryWithInvalidStrategyEndpoint() {
+        given().param("bites", 1).param("strategy", "unknown")
+          .when().get("/quarkus/memory")
+          .then()
+            .statusCode(400);
+    }
+
+    @Test
+    void testCpuParallelEndpoint() {
+        given().param("iterations", 10).param("kernel", "hash").param("parallelism", 4).param("db", true)
+          .when().get("/quarkus/cpu")
+          .then()
+            .statusCode(200)
+            .body(startsWith("Quarkus: CPU consumption is done with 10 iterations using hash over 4 slices"))
+            .body(endsWith("The result is persisted in the database."));
+    }
+
+    @Test
+    void testCpuWithInvalidParallelismEndpoint() {
+        given().param("iterations", 1).param("kernel", "sum").param("parallelism", 0)
+          .when().get("/quarkus/cpu")
+          .then()
+            .statusCode(400);
+    }
+
+    @Test
+    void testWorkloadEndpoint() {
+        for (String name : List.of("json", "regex", "sort", "hash", "gzip", "file")) {
+            given().param("size", 1).param("db", true)
+              .when().get("/quarkus/workload/" + name)
+              .then()
+                .statusCode(200)
+                .body(startsWith("Quarkus: Workload " + name + " is done with 1 units"))
+                .body(endsWith("The result is persisted in the database."));
+        }
+    }
+
+    @Test
+    void testUnknownWorkloadEndpoint() {
+        given()
+          .when().get("/quarkus/workload/unknown")
+          .then()
+            .statusCode(404);
+    }
+
 // tag::adocTestStats[]
     @Test
     void testStats() {
@@ -97,4 +164,172 @@ class QuarkusResourceTest {
             .statusCode(200);
     }
 // end::adocTestStats[]
+
+    @Test
+    void testStatsSummary() {
+        Instant minute = Instant.parse("2020-01-01T00:00:10Z");
+        List<Statistics> seeded = List.of(statistics("summary", 10), statistics("summary", 20), statistics("summary", 30),
+            statistics("summary", 40), statistics("summary", 60));
+        seeded.forEach(statistics -> statistics.doneAt = minute);
+        seeded.subList(3, 5).forEach(statistics -> statistics.doneAt = minute.plusSeconds(60));
+        repository.persist(seeded);
+
+        given().param("bucket", "minute")
+          .when().get("/quarkus/stats/summary")
+          .then()
+            .statusCode(200)
+            .body("findAll { it.parameter == 'summary' }.count", contains(3, 2))
+            .body("findAll { it.parameter == 'summary' }.mean", contains(20.0f, 50.0f))
+            .body("findAll { it.parameter == 'summary' }.p50", contains(20.0f, 50.0f))
+            .body("findAll { it.parameter == 'summary' }.p90", contains(28.0f, 58.0f))
+            .body("findAll { it.parameter == 'summary' }.max", contains(30.0f, 60.0f));
+
+        given().param("bucket", "hour")
+          .when().get("/quarkus/stats/summary")
+          .then()
+            .statusCode(200)
+            .body("findAll { it.parameter == 'summary' }.count", contains(5))
+            .body("findAll { it.parameter == 'summary' }.p50", contains(30.0f))
+            .body("findAll { it.parameter == 'summary' }.max", contains(60.0f));
+    }
+
+    @Test
+    void testStatsSummaryWithInvalidBucket() {
+        given().param("bucket", "century")
+          .when().get("/quarkus/stats/summary")
+          .then()
+            .statusCode(400);
+    }
+
+    @Test
+    void testStatsSummaryWithoutDuration() {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = "no-duration";
+        repository.persist(statistics);
+
+        given().param("bucket", "minute")
+          .when().get("/quarkus/stats/summary")
+          .then()
+            .statusCode(200)
+            .body(not(containsString("no-duration")));
+    }
+
+    @Test
+    void testStatsPage() {
+        List<Statistics> seeded = List.of(statistics("page-1", 10), statistics("page-2", 20), statistics("page-3", 30));
+        repository.persist(seeded);
+
+        given().param("after", seeded.get(0).id).param("limit", 2)
+          .when().get("/quarkus/stats")
+          .then()
+            .statusCode(200)
+            .body("id", contains(seeded.get(1).id.intValue(), seeded.get(2).id.intValue()))
+            .body("parameter", contains("page-2", "page-3"));
+
+        given().param("after", seeded.get(2).id).param("limit", 2)
+          .when().get("/quarkus/stats")
+          .then()
+            .statusCode(200)
+            .body("size()", is(0));
+    }
+
+    @Test
+    void testStatsStream() {
+        given().param("format", "json")
+          .when().get("/quarkus/stats/stream")
+          .then()
+            .statusCode(200)
+            .body(startsWith("["))
+            .body(endsWith("]"));
+    }
+
+    @Test
+    void testWriterMetrics() {
+        given()
+          .when().get("/quarkus/stats/writer")
+          .then()
+            .statusCode(200)
+            .body(containsString("queueDepth"));
+    }
+
+    @Test
+    void testPrometheusMetrics() {
+        given().when().get("/quarkus").then().statusCode(200);
+        given()
+          .when().get("/q/metrics")
+          .then()
+            .statusCode(200)
+            .body(containsString("workload_requests_seconds_count{db=\"false\",endpoint=\"hello\",framework=\"quarkus\",size=\"none\"}"))
+            .body(containsString("workload_active{framework=\"quarkus\"}"));
+    }
+
+    @Test
+    void testStatsNotModified() {
+        String etag = given()
+          .when().get("/quarkus/stats")
+          .then()
+            .statusCode(200)
+            .extract().header("ETag");
+        given().header("If-None-Match", etag)
+          .when().get("/quarkus/stats")
+          .then()
+            .statusCode(304);
+        given().when().get("/quarkus/cpu?iterations=1&db=true").then().statusCode(200);
+        given().header("If-None-Match", etag)
+          .when().get("/quarkus/stats")
+          .then()
+            .statusCode(200);
+    }
+
+    @Test
+    void testTimings() {
+        given().param("iterations", 1)
+          .when().get("/quarkus/cpu")
+          .then()
+            .statusCode(200)
+            .header("Server-Timing", containsString("compute;dur="))
+            .body(containsString("(compute "));
+        given()
+          .when().get("/quarkus/timings")
+          .then()
+            .statusCode(200)
+            .body(containsString("\"cpu\""))
+            .body(containsString("p99Millis"));
+    }
+
+    @Test
+    void testLoadStats() {
+        given().contentType("application/x-ndjson")
+            .body("{\"type\":\"CPU\",\"parameter\":\"10\",\"duration\":\"PT0.2S\",\"description\":\"replay\"}\n{\"type\":\"MEMORY\",\"parameter\":\"1\",\"duration\":\"PT0.1S\",\"description\":\"replay\"}\n".getBytes(StandardCharsets.UTF_8))
+          .when().post("/quarkus/stats/batch")
+          .then()
+            .statusCode(200)
+            .body(containsString("\"inserted\":2"));
+        given().contentType("application/json")
+            .body("[{\"type\":\"CPU\",\"parameter\":\"1\",\"duration\":\"PT0.2S\"}, {\"type\":\"SORT\",\"parameter\":\"2\"}]".getBytes(StandardCharsets.UTF_8))
+          .when().post("/quarkus/stats/batch")
+          .then()
+            .statusCode(200)
+            .body(containsString("\"inserted\":2"));
+        given().contentType("application/json")
+            .body("[{\"type\":\"CPU\",\"parameter\":\"1\"}, 42]".getBytes(StandardCharsets.UTF_8))
+          .when().post("/quarkus/stats/batch")
+          .then()
+            .statusCode(400);
+        given().contentType("application/json")
+            .body("[{\"type\":\"CPU\",\"parameter\":\"1\"}, {\"type\":\"CPU\",\"doneAt\":null}]".getBytes(StandardCharsets.UTF_8))
+          .when().post("/quarkus/stats/batch")
+          .then()
+            .statusCode(400)
+            .body(containsString("invalid statistics #2"));
+    }
+
+    private static Statistics statistics(String parameter, long millis) {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = parameter;
+        statistics.duration = Duration.ofMillis(millis);
+        return statistics;
+    }
 }
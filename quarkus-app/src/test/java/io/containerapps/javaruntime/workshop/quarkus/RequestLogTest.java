@@ -0,0 +1,175 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ResourceBundle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestLogTest {
+
+    private static final RequestLog.Format CPU = RequestLog.Format.of("cpu", "Quarkus: cpu: {iterations} with desc {desc}");
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final RecordingLogger logger = new RecordingLogger();
+
+    @AfterEach
+    void release() {
+        logger.release();
+    }
+
+    @Test
+    void testSampling() {
+        RequestLog requestLog = new RequestLog(registry, 1, Optional.of("hello:0,cpu:1"), false, 1);
+
+        assertThat(requestLog.sample(logger, "hello"), is(false));
+        assertThat(requestLog.sample(logger, "cpu"), is(true));
+        assertThat(requestLog.sample(logger, "memory"), is(true));
+        assertThat(registry.get("workload.log.dropped").functionCounter().count(), is(0.0));
+    }
+
+    @Test
+    void testParse() {
+        assertThat(RequestLog.parse(" hello : 100, cpu:10,"), is(Map.of("hello", 100, "cpu", 10)));
+        assertThat(RequestLog.parse(""), is(Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> RequestLog.parse("hello=100"));
+    }
+
+    @Test
+    void testFormat() {
+        RequestLog.Format format = RequestLog.Format.of("cpu", "Quarkus: cpu: {iterations} {db} after {iterations}");
+
+        assertThat(format.pattern(), is("Quarkus: cpu: {0} {1} after {0}"));
+        assertThat(format.fields(), is(List.of("iterations", "db")));
+        assertThrows(IllegalArgumentException.class, () -> RequestLog.Format.of("cpu", "Quarkus: cpu: {iterations"));
+    }
+
+    @Test
+    void testSync() {
+        RequestLog requestLog = new RequestLog(registry, 1, Optional.empty(), false, 1);
+
+        requestLog.log(logger, CPU, 1, "java17");
+        assertThat(logger.lines, is(List.of("Quarkus: cpu: 1 with desc java17")));
+        assertThat(logger.threads, is(List.of(Thread.currentThread().getName())));
+    }
+
+    @Test
+    void testAsync() {
+        RequestLog requestLog = new RequestLog(registry, 1, Optional.empty(), true, 16);
+
+        requestLog.log(logger, CPU, 1, "java17");
+        requestLog.log(logger, CPU, 2, null);
+        requestLog.log(logger, CPU, 3, "say \"hi\"\n");
+        requestLog.shutdown();
+
+        String thread = Thread.currentThread().getName();
+        assertThat(logger.lines.stream().map(RequestLogTest::withoutTimestamp).toList(), is(List.of(
+            "{\"timestamp\":\"\",\"framework\":\"quarkus\",\"endpoint\":\"cpu\",\"thread\":\"" + thread + "\",\"iterations\":1,\"desc\":\"java17\",\"message\":\"Quarkus: cpu: 1 with desc java17\"}",
+            "{\"timestamp\":\"\",\"framework\":\"quarkus\",\"endpoint\":\"cpu\",\"thread\":\"" + thread + "\",\"iterations\":2,\"desc\":null,\"message\":\"Quarkus: cpu: 2 with desc null\"}",
+            "{\"timestamp\":\"\",\"framework\":\"quarkus\",\"endpoint\":\"cpu\",\"thread\":\"" + thread + "\",\"iterations\":3,\"desc\":\"say \\\"hi\\\"\\n\",\"message\":\"Quarkus: cpu: 3 with desc say \\\"hi\\\"\\n\"}")));
+        assertThat(logger.threads, everyItem(is("request-log")));
+    }
+
+    @Test
+    void testAsyncDropsWhenFull() {
+        RequestLog requestLog = new RequestLog(registry, 1, Optional.empty(), true, 1);
+        logger.hold();
+        requestLog.log(logger, CPU, 1, null);
+        logger.awaitLogging();
+        requestLog.log(logger, CPU, 2, null);
+
+        requestLog.log(logger, CPU, 3, null);
+        assertThat(registry.get("workload.log.dropped").functionCounter().count(), is(1.0));
+        assertThat(registry.get("workload.log.queued").gauge().value(), is(1.0));
+
+        logger.release();
+        requestLog.shutdown();
+        assertThat(logger.lines.size(), is(2));
+        assertThat(logger.lines.get(0), containsString("\"iterations\":1,"));
+        assertThat(logger.lines.get(1), containsString("\"iterations\":2,"));
+        assertThat(registry.get("workload.log.queued").gauge().value(), is(0.0));
+    }
+
+    @Test
+    void testAsyncAfterShutdown() {
+        RequestLog requestLog = new RequestLog(registry, 1, Optional.empty(), true, 16);
+        requestLog.shutdown();
+
+        requestLog.log(logger, CPU, 1, null);
+        assertThat(logger.lines, is(List.of()));
+        assertThat(registry.get("workload.log.dropped").functionCounter().count(), is(1.0));
+    }
+
+    private static String withoutTimestamp(String line) {
+        return line.replaceFirst("\"timestamp\":\"[^\"]+\"", "\"timestamp\":\"\"");
+    }
+
+    /**
+     * Records the formatted lines and the threads that logged them, and can hold the first line until released.
+     */
+    static class RecordingLogger implements System.Logger {
+
+        final List<String> lines = new CopyOnWriteArrayList<>();
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        private final CountDownLatch logging = new CountDownLatch(1);
+        private volatile CountDownLatch held = new CountDownLatch(0);
+
+        void hold() {
+            held = new CountDownLatch(1);
+        }
+
+        void release() {
+            held.countDown();
+        }
+
+        void awaitLogging() {
+            try {
+                assertThat(logging.await(5, TimeUnit.SECONDS), is(true));
+            } catch (InterruptedException ie) {
+                throw new IllegalStateException(ie);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return RequestLogTest.class.getName();
+        }
+
+        @Override
+        public boolean isLoggable(Level level) {
+            return true;
+        }
+
+        @Override
+        public void log(Level level, ResourceBundle bundle, String msg, Throwable thrown) {
+            log(level, bundle, msg, new Object[0]);
+        }
+
+        @Override
+        public void log(Level level, ResourceBundle bundle, String format, Object... params) {
+            if (logging.getCount() > 0) {
+                logging.countDown();
+                try {
+                    held.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            // Like the logging backends, only formats the message when there are parameters
+            lines.add(params == null || params.length == 0 ? format : MessageFormat.format(format, params));
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+}
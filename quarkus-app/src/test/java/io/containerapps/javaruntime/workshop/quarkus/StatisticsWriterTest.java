@@ -0,0 +1,216 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class StatisticsWriterTest {
+
+    private final RecordingRepository repository = new RecordingRepository();
+    private final StatisticsCache cache = new StatisticsCache(100, Duration.ofMinutes(1), Duration.ZERO);
+    private final StatisticsStore store = new StatisticsStore(new SimpleMeterRegistry(), cache, false, "target/statistics-store",
+        1, Duration.ofDays(2), Duration.ofDays(30), Duration.ofDays(365));
+
+    @AfterEach
+    void release() {
+        repository.release();
+    }
+
+    @Test
+    void testBatches() {
+        StatisticsWriter writer = writer(100, 10, Duration.ofSeconds(1), StatisticsWriter.Overflow.SYNC);
+        for (int i = 0; i < 25; i++) {
+            assertThat(writer.write(statistics()), is(StatisticsWriter.Outcome.QUEUED));
+        }
+        writer.shutdown();
+
+        assertThat(repository.batchSizes(), is(List.of(10, 10, 5)));
+        assertThat(repository.single.size(), is(0));
+        assertThat(writer.metrics().written(), is(25L));
+        assertThat(writer.metrics().flushes(), is(3L));
+    }
+
+    @Test
+    void testBlockWaitsForRoom() throws Exception {
+        StatisticsWriter writer = writer(1, 1, Duration.ofMillis(50), StatisticsWriter.Overflow.BLOCK);
+        repository.hold();
+        writer.write(statistics());
+        repository.awaitFlushing();
+        writer.write(statistics());
+
+        CompletableFuture<StatisticsWriter.Outcome> blocked = CompletableFuture.supplyAsync(() -> writer.write(statistics()));
+        Thread.sleep(200);
+        assertThat(blocked.isDone(), is(false));
+
+        repository.release();
+        assertThat(blocked.get(5, TimeUnit.SECONDS), is(StatisticsWriter.Outcome.QUEUED));
+        writer.shutdown();
+        assertThat(repository.batchSizes(), is(List.of(1, 1, 1)));
+        assertThat(writer.metrics().dropped(), is(0L));
+    }
+
+    @Test
+    void testBlockStopsWaitingOnShutdown() throws Exception {
+        StatisticsWriter writer = writer(1, 1, Duration.ofMillis(50), StatisticsWriter.Overflow.BLOCK);
+        repository.hold();
+        writer.write(statistics());
+        repository.awaitFlushing();
+        writer.write(statistics());
+        CompletableFuture<StatisticsWriter.Outcome> blocked = CompletableFuture.supplyAsync(() -> writer.write(statistics()));
+        Thread.sleep(200);
+
+        // The drainer is stuck in its first batch, so the shutdown flushes the queue itself
+        writer.shutdown();
+
+        assertThat(blocked.get(5, TimeUnit.SECONDS), is(StatisticsWriter.Outcome.PERSISTED));
+        assertThat(repository.batchSizes(), is(List.of(1)));
+        assertThat(repository.single.size(), is(1));
+        repository.release();
+        repository.awaitBatches(2);
+        assertThat(repository.batchSizes(), is(List.of(1, 1)));
+    }
+
+    @Test
+    void testDropWhenFull() {
+        StatisticsWriter writer = writer(1, 1, Duration.ofMillis(50), StatisticsWriter.Overflow.DROP);
+        repository.hold();
+        writer.write(statistics());
+        repository.awaitFlushing();
+        assertThat(writer.write(statistics()), is(StatisticsWriter.Outcome.QUEUED));
+
+        assertThat(writer.write(statistics()), is(StatisticsWriter.Outcome.DROPPED));
+        assertThat(writer.metrics().dropped(), is(1L));
+        assertThat(repository.single.size(), is(0));
+
+        repository.release();
+        writer.shutdown();
+        assertThat(repository.batchSizes(), is(List.of(1, 1)));
+    }
+
+    @Test
+    void testSyncWhenFull() {
+        StatisticsWriter writer = writer(1, 1, Duration.ofMillis(50), StatisticsWriter.Overflow.SYNC);
+        repository.hold();
+        writer.write(statistics());
+        repository.awaitFlushing();
+        writer.write(statistics());
+
+        Statistics overflowing = statistics();
+        assertThat(writer.write(overflowing), is(StatisticsWriter.Outcome.PERSISTED));
+        assertThat(repository.single, is(List.of(overflowing)));
+
+        repository.release();
+        writer.shutdown();
+        assertThat(repository.batchSizes(), is(List.of(1, 1)));
+        assertThat(writer.metrics().written(), is(3L));
+    }
+
+    @Test
+    void testWriteAfterShutdown() {
+        StatisticsWriter writer = writer(100, 10, Duration.ofMillis(50), StatisticsWriter.Overflow.DROP);
+        writer.shutdown();
+
+        Statistics late = statistics();
+        assertThat(writer.write(late), is(StatisticsWriter.Outcome.PERSISTED));
+        assertThat(repository.single, is(List.of(late)));
+        assertThat(writer.metrics().queueDepth(), is(0));
+    }
+
+    @Test
+    void testReactiveFailure() throws Exception {
+        ReactiveStatisticsRepository failing = new ReactiveStatisticsRepository(null) {
+            @Override
+            public Uni<Void> persist(Statistics statistics) {
+                return Uni.createFrom().failure(new IllegalStateException("connection refused"));
+            }
+        };
+        StatisticsWriter writer = new StatisticsWriter(repository, cache, store, failing, true, false, 1, 1, Duration.ofMillis(50),
+            StatisticsWriter.Overflow.SYNC);
+
+        assertThat(writer.writeAsync(statistics()).toCompletableFuture().get(5, TimeUnit.SECONDS), is(StatisticsWriter.Outcome.FAILED));
+        assertThat(writer.metrics().failed(), is(1L));
+        assertThat(writer.metrics().written(), is(0L));
+    }
+
+    private StatisticsWriter writer(int queueCapacity, int batchSize, Duration flushInterval, StatisticsWriter.Overflow overflow) {
+        return new StatisticsWriter(repository, cache, store, null, false, true, queueCapacity, batchSize, flushInterval, overflow);
+    }
+
+    private static Statistics statistics() {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = "writer";
+        statistics.duration = Duration.ofMillis(1);
+        return statistics;
+    }
+
+    /**
+     * Records the statistics instead of inserting them, and can hold the first batch until released.
+     */
+    static class RecordingRepository extends StatisticsRepository {
+
+        final List<List<Statistics>> batches = new CopyOnWriteArrayList<>();
+        final List<Statistics> single = new CopyOnWriteArrayList<>();
+        private final CountDownLatch flushing = new CountDownLatch(1);
+        private volatile CountDownLatch held = new CountDownLatch(0);
+
+        void hold() {
+            held = new CountDownLatch(1);
+        }
+
+        void release() {
+            held.countDown();
+        }
+
+        void awaitFlushing() {
+            try {
+                assertThat(flushing.await(5, TimeUnit.SECONDS), is(true));
+            } catch (InterruptedException ie) {
+                throw new IllegalStateException(ie);
+            }
+        }
+
+        void awaitBatches(int count) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (batches.size() < count && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+
+        List<Integer> batchSizes() {
+            return batches.stream().map(List::size).toList();
+        }
+
+        @Override
+        public void persist(Statistics statistics) {
+            single.add(statistics);
+        }
+
+        @Override
+        public void persist(Iterable<Statistics> statistics) {
+            if (flushing.getCount() > 0) {
+                flushing.countDown();
+                try {
+                    held.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            List<Statistics> batch = new ArrayList<>();
+            statistics.forEach(batch::add);
+            batches.add(batch);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+#!/usr/bin/env bash
+##############################################################################
+# Usage: ./compare.sh quarkus|micronaut|springboot [requests] [concurrency]
+# Starts an app twice, logging every request and logging a sample of them, and
+# prints the heap bytes allocated per request by hello and by cpu?iterations=0,
+# read from the jvm_gc_memory_allocated_bytes_total metric.
+# Build the app first (mvn package -DskipTests) and start the database.
+##############################################################################
+# Dependencies: Java 17, curl 7.66+, awk
+##############################################################################
+
+set -e
+cd $(dirname ${BASH_SOURCE[0]})
+cd ../..
+
+framework=${1}
+requests=${2:-20000}
+concurrency=${3:-4}
+
+case $framework in
+  quarkus)
+    port=8701
+    jar=quarkus-app/target/quarkus-app/quarkus-run.jar
+    metrics=q/metrics
+    ;;
+  micronaut)
+    port=8702
+    jar=micronaut-app/target/micronaut-app-0.1.jar
+    metrics=prometheus
+    ;;
+  springboot)
+    port=8703
+    jar=springboot-app/target/springboot-app-1.0.0-SNAPSHOT.jar
+    metrics=actuator/prometheus
+    ;;
+  *)
+    echo "Usage: ./$(basename "$0") quarkus|micronaut|springboot [requests] [concurrency]"
+    exit 1
+    ;;
+esac
+
+base="http://localhost:$port/$framework"
+urls=$(mktemp)
+
+# The metric only moves when a young GC runs, so a small young generation keeps its error under 4 MB
+allocated() {
+  curl -s "http://localhost:$port/$metrics" | awk '/^jvm_gc_memory_allocated_bytes_total/ { print $NF }'
+}
+
+measure() {
+  for i in $(seq "$requests"); do
+    echo "url = \"$base$1\""
+    echo "output = /dev/null"
+  done > "$urls"
+  # Warms up the JIT, so the interpreter doesn't count
+  curl -s --no-progress-meter --parallel --parallel-max "$concurrency" --config "$urls"
+  before=$(allocated)
+  curl -s --no-progress-meter --parallel --parallel-max "$concurrency" --config "$urls"
+  after=$(allocated)
+  awk -v before="$before" -v after="$after" -v requests="$requests" 'BEGIN { printf "%d", (after - before) / requests }'
+}
+
+run() {
+  logging=$1
+  java -Xmn4m -Dworkload.log.sample-every=$2 $JAVA_OPTS -jar "$jar" > "$framework-app/target/allocation-$logging.log" 2>&1 &
+  pid=$!
+  until curl -s -o /dev/null "$base"; do sleep 0.5; done
+  hello=$(measure "")
+  cpu=$(measure "/cpu?iterations=0")
+  kill $pid && wait $pid 2>/dev/null || true
+  printf "| %-7s | %13s | %11s |\n" "$logging" "$hello" "$cpu"
+}
+
+echo "$framework: heap bytes allocated per request, over $requests requests from $concurrency concurrent clients"
+echo
+echo "| Logging | hello (B/req) | cpu (B/req) |"
+echo "|---------|---------------|-------------|"
+run all 1
+run sampled 1000
+rm -f "$urls"
@@ -0,0 +1,512 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares Quarkus, Micronaut and Spring Boot from the statistics they recorded. The three apps are called at once
+ * with the non-blocking JDK HttpClient, and their latencies are printed side by side as a Markdown table. An app that
+ * fails, or doesn't answer within the timeout, is left out of the table instead of failing the comparison.
+ * {@code java Compare.java summary hour 10}: the /stats/summary of each app, by time bucket, type, parameter and description
+ * {@code java Compare.java rows merged.ndjson 10}: the /stats/stream of each app, merged by done_at into merged.ndjson,
+ * and summarized by type, parameter and description
+ */
+public class Compare {
+
+    private static final List<Backend> BACKENDS = List.of(
+        new Backend("quarkus", env("QUARKUS_URL", "http://localhost:8701/quarkus")),
+        new Backend("micronaut", env("MICRONAUT_URL", "http://localhost:8702/micronaut")),
+        new Backend("springboot", env("SPRINGBOOT_URL", "http://localhost:8703/springboot")));
+    private static final int QUEUE_CAPACITY = 1024;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || !List.of("summary", "rows").contains(args[0])) {
+            System.err.println("Usage: java Compare.java summary [minute|hour|day] [timeout seconds]");
+            System.err.println("       java Compare.java rows [merged.ndjson] [timeout seconds]");
+            System.exit(1);
+        }
+        Duration timeout = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 10);
+        HttpClient client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        if (args[0].equals("summary")) {
+            summary(client, args.length > 1 ? args[1] : "hour", timeout);
+        } else {
+            rows(client, args.length > 1 ? Path.of(args[1]) : null, timeout);
+        }
+    }
+
+    /**
+     * Sends the three requests before waiting for any response, each one failing on its own after the timeout.
+     */
+    @SuppressWarnings("unchecked")
+    private static void summary(HttpClient client, String bucket, Duration timeout) {
+        Table table = new Table("bucket", "type", "parameter", "description");
+        Map<Backend, CompletableFuture<List<Object>>> responses = new LinkedHashMap<>();
+        for (Backend backend : BACKENDS) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(backend.url() + "/stats/summary?bucket=" + bucket)).timeout(timeout).build();
+            long start = System.nanoTime();
+            responses.put(backend, client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("HTTP " + response.statusCode());
+                    }
+                    return (List<Object>) new Json(response.body()).value();
+                })
+                .whenComplete((rows, failure) -> backend.status(rows == null ? null : rows.size(), failure, start)));
+        }
+        responses.forEach((backend, response) -> {
+            List<Object> rows = response.exceptionally(failure -> List.of()).join();
+            for (Object row : rows) {
+                Map<String, Object> summary = (Map<String, Object>) row;
+                table.put(List.of(instant(summary.get("bucket")).toString(), text(summary.get("type")), text(summary.get("parameter")), text(summary.get("description"))),
+                    backend, new Cell(number(summary.get("count")).longValue(), number(summary.get("p50")).doubleValue(),
+                        number(summary.get("p99")).doubleValue(), number(summary.get("max")).doubleValue()));
+            }
+        });
+        table.print(System.out);
+        BACKENDS.forEach(backend -> System.err.println(backend.status()));
+    }
+
+    /**
+     * Streams the rows of the three apps at once, each one read by its own thread into a bounded queue, and always
+     * writes the row with the earliest done_at among the next row of each app. Each app streams its rows by id, so
+     * the merge is ordered by done_at as far as the ids of each app are. An app that sends no row for the timeout is
+     * left out, keeping the rows it sent.
+     */
+    private static void rows(HttpClient client, Path file, Duration timeout) throws IOException, InterruptedException {
+        List<Source> sources = new ArrayList<>();
+        for (Backend backend : BACKENDS) {
+            sources.add(new Source(backend, client, timeout));
+        }
+        Map<List<String>, Map<Backend, Durations>> durations = new TreeMap<>(Table.KEY_ORDER);
+        PriorityQueue<Row> heads = new PriorityQueue<>();
+        for (Source source : sources) {
+            source.next(heads);
+        }
+        try (PrintStream out = file == null ? new PrintStream(PrintStream.nullOutputStream()) : new PrintStream(Files.newOutputStream(file))) {
+            while (!heads.isEmpty()) {
+                Row row = heads.poll();
+                if (row.duration() != null) {
+                    durations.computeIfAbsent(List.of(text(row.type()), text(row.parameter()), text(row.description())), k -> new LinkedHashMap<>())
+                        .computeIfAbsent(row.source().backend(), k -> new Durations())
+                        .add(row.duration());
+                }
+                row.appendJson(out);
+                row.source().next(heads);
+            }
+        }
+        Table table = new Table("type", "parameter", "description");
+        durations.forEach((key, byBackend) -> byBackend.forEach((backend, values) -> table.put(key, backend, values.cell())));
+        table.print(System.out);
+        BACKENDS.forEach(backend -> System.err.println(backend.status()));
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    private static String text(Object value) {
+        return value == null ? "-" : value.toString();
+    }
+
+    private static BigDecimal number(Object value) {
+        return value == null ? BigDecimal.ZERO : (BigDecimal) value;
+    }
+
+    /**
+     * Quarkus and Spring Boot write the instants as ISO-8601, Micronaut as decimal epoch seconds.
+     */
+    private static Instant instant(Object value) {
+        if (value instanceof BigDecimal seconds) {
+            return Instant.ofEpochSecond(seconds.longValue(), seconds.remainder(BigDecimal.ONE).movePointRight(9).longValue());
+        }
+        return value == null ? null : Instant.parse((String) value);
+    }
+
+    /**
+     * Quarkus and Spring Boot write the durations as ISO-8601, Micronaut as decimal seconds.
+     */
+    private static Long nanos(Object value) {
+        if (value instanceof BigDecimal seconds) {
+            return seconds.movePointRight(9).longValue();
+        }
+        return value == null ? null : Duration.parse((String) value).toNanos();
+    }
+
+    private static final class Backend {
+
+        private final String framework;
+        private final String url;
+        private volatile String status;
+
+        Backend(String framework, String url) {
+            this.framework = framework;
+            this.url = url;
+            this.status = framework + ": no response";
+        }
+
+        String framework() {
+            return framework;
+        }
+
+        String url() {
+            return url;
+        }
+
+        String status() {
+            return status;
+        }
+
+        void status(Integer rows, Throwable failure, long start) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Throwable cause = failure != null && failure.getCause() != null ? failure.getCause() : failure;
+            status = cause == null
+                ? String.format(Locale.ROOT, "%s: %d rows in %d ms", framework, rows, millis)
+                : String.format(Locale.ROOT, "%s: left out after %d ms, %s", framework, millis, cause);
+        }
+    }
+
+    /**
+     * The /stats/stream of one app, read line by line by a daemon thread as the body arrives.
+     */
+    private static final class Source {
+
+        private static final Row END = new Row(null, null, null, null, null, null, null, null);
+
+        private final Backend backend;
+        private final Duration timeout;
+        private final BlockingQueue<Row> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final long start = System.nanoTime();
+        private volatile Stream<String> lines;
+        private volatile Throwable failure;
+        private long count;
+        private boolean done;
+
+        Source(Backend backend, HttpClient client, Duration timeout) {
+            this.backend = backend;
+            this.timeout = timeout;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(backend.url() + "/stats/stream")).timeout(timeout).build();
+            CompletableFuture<HttpResponse<Stream<String>>> response = client.sendAsync(request, HttpResponse.BodyHandlers.ofLines());
+            Thread reader = new Thread(() -> read(response), "compare-" + backend.framework());
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        Backend backend() {
+            return backend;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void read(CompletableFuture<HttpResponse<Stream<String>>> response) {
+            try {
+                HttpResponse<Stream<String>> headers = response.join();
+                lines = headers.body();
+                if (headers.statusCode() != 200) {
+                    throw new IllegalStateException("HTTP " + headers.statusCode());
+                }
+                Iterator<String> iterator = lines.iterator();
+                while (iterator.hasNext()) {
+                    String line = iterator.next();
+                    if (!line.isBlank()) {
+                        queue.put(Row.of(this, (Map<String, Object>) new Json(line).value()));
+                    }
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                try {
+                    queue.put(END);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Adds the next row of this app to the heads, if it sends one within the timeout.
+         */
+        void next(PriorityQueue<Row> heads) throws InterruptedException {
+            if (done) {
+                return;
+            }
+            Row row = queue.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (row != null && row != END) {
+                count++;
+                heads.add(row);
+                return;
+            }
+            done = true;
+            backend.status((int) count, row == null ? new IllegalStateException("no row for " + timeout.toSeconds() + " s") : failure, start);
+            if (row == null && lines != null) {
+                lines.close();
+            }
+        }
+    }
+
+    private record Row(Source source, Long id, Instant doneAt, String framework, String type, String parameter,
+                       String description, Long duration) implements Comparable<Row> {
+
+        @SuppressWarnings("unchecked")
+        static Row of(Source source, Map<String, Object> json) {
+            return new Row(source, json.get("id") == null ? null : number(json.get("id")).longValue(), instant(json.get("doneAt")),
+                (String) json.get("framework"), (String) json.get("type"), (String) json.get("parameter"),
+                (String) json.get("description"), nanos(json.get("duration")));
+        }
+
+        @Override
+        public int compareTo(Row other) {
+            if (doneAt == null || other.doneAt == null) {
+                return doneAt == null ? (other.doneAt == null ? 0 : 1) : -1;
+            }
+            return doneAt.compareTo(other.doneAt);
+        }
+
+        /**
+         * Writes the row as a JSON line, with ISO-8601 instants and durations whatever the app.
+         */
+        void appendJson(PrintStream out) {
+            StringBuilder json = new StringBuilder("{\"id\":").append(id)
+                .append(",\"doneAt\":").append(doneAt == null ? "null" : "\"" + doneAt + "\"")
+                .append(",\"framework\":").append(string(framework))
+                .append(",\"type\":").append(string(type))
+                .append(",\"parameter\":").append(string(parameter))
+                .append(",\"description\":").append(string(description))
+                .append(",\"duration\":").append(duration == null ? "null" : "\"" + Duration.ofNanos(duration) + "\"")
+                .append('}');
+            out.println(json);
+        }
+
+        private static String string(String value) {
+            if (value == null) {
+                return "null";
+            }
+            StringBuilder json = new StringBuilder("\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            return json.append('"').toString();
+        }
+    }
+
+    private record Cell(long count, double p50, double p99, double max) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d | %.1f | %.1f | %.1f", count, p50, p99, max);
+        }
+    }
+
+    private static final class Durations {
+
+        private long[] nanos = new long[1024];
+        private int count;
+
+        void add(long duration) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = duration;
+        }
+
+        Cell cell() {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return new Cell(count, millis(sorted, 0.5), millis(sorted, 0.99), sorted[count - 1] / 1e6);
+        }
+
+        private static double millis(long[] sorted, double percentile) {
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1e6;
+        }
+    }
+
+    /**
+     * One line per key, and for each framework the count and the p50, p99 and max latencies in milliseconds.
+     */
+    private static final class Table {
+
+        static final Comparator<List<String>> KEY_ORDER = (a, b) -> {
+            for (int i = 0; i < a.size(); i++) {
+                int order = a.get(i).compareTo(b.get(i));
+                if (order != 0) {
+                    return order;
+                }
+            }
+            return 0;
+        };
+
+        private final List<String> columns;
+        private final Map<List<String>, Map<Backend, Cell>> lines = new TreeMap<>(KEY_ORDER);
+
+        Table(String... columns) {
+            this.columns = List.of(columns);
+        }
+
+        void put(List<String> key, Backend backend, Cell cell) {
+            lines.computeIfAbsent(key, k -> new LinkedHashMap<>()).put(backend, cell);
+        }
+
+        void print(PrintStream out) {
+            StringBuilder header = new StringBuilder("| ").append(String.join(" | ", columns));
+            StringBuilder separator = new StringBuilder("|").append("---|".repeat(columns.size()));
+            for (Backend backend : BACKENDS) {
+                header.append(" | ").append(backend.framework()).append(" count | p50 | p99 | max");
+                separator.append("---:|".repeat(4));
+            }
+            out.println(header.append(" |"));
+            out.println(separator);
+            lines.forEach((key, cells) -> {
+                StringBuilder line = new StringBuilder("| ").append(String.join(" | ", key));
+                for (Backend backend : BACKENDS) {
+                    Cell cell = cells.get(backend);
+                    line.append(" | ").append(cell == null ? "- | - | - | -" : cell.toString());
+                }
+                out.println(line.append(" |"));
+            });
+        }
+    }
+
+    /**
+     * Just enough JSON for the responses of the apps: objects become maps, arrays lists and numbers BigDecimals.
+     */
+    private static final class Json {
+
+        private final String text;
+        private int position;
+
+        Json(String text) {
+            this.text = text;
+        }
+
+        Object value() {
+            skipWhitespace();
+            return switch (text.charAt(position)) {
+                case '{' -> object();
+                case '[' -> array();
+                case '"' -> string();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> number();
+            };
+        }
+
+        private BigDecimal number() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            return new BigDecimal(text.substring(start, position));
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == '}') {
+                position++;
+                return object;
+            }
+            do {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                object.put(name, value());
+                skipWhitespace();
+            } while (text.charAt(position++) == ',');
+            return object;
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == ']') {
+                position++;
+                return array;
+            }
+            do {
+                array.add(value());
+                skipWhitespace();
+            } while (text.charAt(position++) == ',');
+            return array;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder string = new StringBuilder();
+            for (char c = text.charAt(position++); c != '"'; c = text.charAt(position++)) {
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n' -> string.append('\n');
+                    case 'r' -> string.append('\r');
+                    case 't' -> string.append('\t');
+                    case 'b' -> string.append('\b');
+                    case 'f' -> string.append('\f');
+                    case 'u' -> {
+                        string.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> string.append(escaped);
+                }
+            }
+            return string.toString();
+        }
+
+        private Object literal(String literal, Object value) {
+            if (!text.startsWith(literal, position)) {
+                throw new IllegalArgumentException("Unexpected JSON at " + position + ": " + text);
+            }
+            position += literal.length();
+            return value;
+        }
+
+        private void expect(char c) {
+            if (text.charAt(position++) != c) {
+                throw new IllegalArgumentException("Expected " + c + " at " + (position - 1) + ": " + text);
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
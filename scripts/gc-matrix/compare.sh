@@ -0,0 +1,135 @@
+#!/usr/bin/env bash
+##############################################################################
+# Usage: ./compare.sh quarkus|micronaut|springboot [requests] [concurrency]
+# Starts an app once per garbage collector and heap size of the matrix, in a
+# JVM sized as a container of LIMIT memory, sends it the same /memory load and
+# prints the throughput, p99 latency, max GC pause and peak RSS of each run.
+# Each run is also recorded into the statistics of the app, with the
+# configuration as description. Flag sets the JVM rejects are skipped.
+# Build the app first (mvn package -DskipTests) and start the database.
+##############################################################################
+# Dependencies: Java 17 (21 for generational ZGC), curl 7.66+, awk
+##############################################################################
+
+set -e
+cd $(dirname ${BASH_SOURCE[0]})
+cd ../..
+
+framework=${1}
+requests=${2:-2000}
+concurrency=${3:-8}
+gcs=${GCS:-g1 parallel zgc shenandoah}
+heaps=${HEAPS:--XX:MaxRAMPercentage=75 -Xmx256m}
+limit=${LIMIT-1g}
+path=${WORKLOAD_PATH:-memory?bites=10}
+warmup=${WARMUP:-$((requests / 4))}
+
+case $framework in
+  quarkus)
+    port=8701
+    jar=quarkus-app/target/quarkus-app/quarkus-run.jar
+    ;;
+  micronaut)
+    port=8702
+    jar=micronaut-app/target/micronaut-app-0.1.jar
+    ;;
+  springboot)
+    port=8703
+    jar=springboot-app/target/springboot-app-1.0.0-SNAPSHOT.jar
+    ;;
+  *)
+    echo "Usage: ./$(basename "$0") quarkus|micronaut|springboot [requests] [concurrency]"
+    exit 1
+    ;;
+esac
+
+gc_flags() {
+  case $1 in
+    g1) echo "-XX:+UseG1GC" ;;
+    parallel) echo "-XX:+UseParallelGC" ;;
+    zgc) echo "-XX:+UseZGC -XX:+ZGenerational" ;;
+    shenandoah) echo "-XX:+UseShenandoahGC" ;;
+    *) echo "$1" ;;
+  esac
+}
+
+base="http://localhost:$port/$framework"
+dir=$framework-app/target/gc-matrix
+mkdir -p "$dir"
+# -XX:MaxRAM makes the JVM size its heap as in a container of that memory, set LIMIT= in a real container
+sizing=${limit:+-XX:MaxRAM=$limit}
+limit_mb=$(echo "$limit" | awk '/[gG]$/ { print $1 * 1024; next } /[mM]$/ { print $1 + 0; next } { print 0 }')
+urls=$(mktemp)
+rows=$(mktemp)
+
+load() {
+  for i in $(seq "$1"); do
+    echo "url = \"$base/$path\""
+    echo "output = /dev/null"
+  done > "$urls"
+  curl -s --no-progress-meter --parallel --parallel-max "$concurrency" --write-out '%{http_code} %{time_total}\n' --config "$urls" || true
+}
+
+run() {
+  gc=$1
+  heap=$2
+  flags="$(gc_flags "$gc") $heap $sizing"
+  config="gc-matrix $gc $heap${limit:+ limit=$limit}"
+  if ! java $flags -version > /dev/null 2>&1; then
+    printf "| %-10s | %-24s | not supported by this JVM: %s\n" "$gc" "$heap" "$flags"
+    return
+  fi
+  log="$dir/$(echo "$gc $heap" | tr -cs 'A-Za-z0-9=' '-' | sed 's/^-*//; s/-*$//')"
+  # The pauses are logged by gc for the stop-the-world collectors, and by gc+phases for ZGC
+  java $flags -Xlog:gc,gc+phases:file="$log.gc" $JAVA_OPTS -jar "$jar" > "$log.log" 2>&1 &
+  pid=$!
+  until curl -s -o /dev/null "$base" || ! kill -0 $pid 2>/dev/null; do sleep 0.5; done
+  if ! kill -0 $pid 2>/dev/null; then
+    printf "| %-10s | %-24s | did not start, see %s\n" "$gc" "$heap" "$log.log"
+    return
+  fi
+
+  load "$warmup" > /dev/null
+  skip=$(wc -l < "$log.gc")
+  from=$(date +%s%N)
+  load "$requests" > "$rows"
+  to=$(date +%s%N)
+  if ! kill -0 $pid 2>/dev/null; then
+    printf "| %-10s | %-24s | crashed, see %s\n" "$gc" "$heap" "$log.log"
+    return
+  fi
+  rss=$(awk '/^VmHWM/ { print $2 }' /proc/$pid/status)
+  pause=$(tail -n +$((skip + 1)) "$log.gc" | awk '/Pause/ && $NF ~ /ms$/ { v = $NF + 0; if (v > max) max = v } END { print max + 0 }')
+
+  sort -k2 -n "$rows" | awk -v seconds="$(( (to - from) / 1000000 ))" -v pause="$pause" -v rss="$rss" -v limit_mb="$limit_mb" \
+      -v gc="$gc" -v heap="$heap" -v config="$config" -v workload="${path#*\?}" -v record="$dir/record.ndjson" '
+    { latency[NR] = $2; if ($1 != 200) errors++ }
+    END {
+      seconds /= 1000
+      throughput = NR / seconds
+      p99 = latency[int(NR * 0.99)]
+      printf "| %-10s | %-24s | %10.1f | %8.1f | %14.2f | %13.1f | %9s | %6d |\n", gc, heap, throughput, p99 * 1000, pause,
+        rss / 1024, limit_mb ? sprintf("%.0f%%", rss / 1024 * 100 / limit_mb) : "-", errors
+      # The metrics that are not durations are in the parameter, with the duration of the load
+      row = "{\"type\":\"MEMORY\",\"parameter\":\"%s:%s\",\"duration\":\"PT%.6fS\",\"description\":\"%s\"}\n"
+      printf row, workload, "p99", p99, config > record
+      printf row, workload, "max-pause", pause / 1000, config > record
+      printf row, workload, sprintf("throughput=%.1f", throughput), seconds, config > record
+      printf row, workload, sprintf("rss-mb=%.0f", rss / 1024), seconds, config > record
+    }'
+  curl -s -o /dev/null -X POST -H 'Content-Type: application/x-ndjson' --data-binary @"$dir/record.ndjson" "$base/stats/batch"
+  rm -f "$dir/record.ndjson"
+
+  kill $pid && wait $pid 2>/dev/null || true
+}
+
+echo "$framework: $requests requests to $base/$path from $concurrency concurrent clients after $warmup to warm up${limit:+, in $limit of memory}"
+echo
+echo "| GC         | Heap                     | Throughput | p99 (ms) | Max pause (ms) | Peak RSS (MB) | RSS/limit | Errors |"
+echo "|------------|--------------------------|------------|----------|----------------|---------------|-----------|--------|"
+for gc in $gcs; do
+  for heap in $heaps; do
+    run "$gc" "$heap"
+  done
+done
+rm -f "$urls" "$rows"
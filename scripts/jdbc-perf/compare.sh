@@ -0,0 +1,90 @@
+#!/usr/bin/env bash
+##############################################################################
+# Usage: ./compare.sh quarkus|micronaut|springboot [rows] [concurrency] [requests]
+# Inserts the same statistics into an app with its default and its perf profile,
+# in bulk through /stats/batch and one by one through /cpu?db=true, and prints
+# the insert throughput of each run.
+# Build the app first (mvn package -DskipTests) and start the database.
+##############################################################################
+# Dependencies: Java 17, curl 7.66+, awk
+##############################################################################
+
+set -e
+cd $(dirname ${BASH_SOURCE[0]})
+cd ../..
+
+framework=${1}
+rows=${2:-100000}
+concurrency=${3:-50}
+requests=${4:-2000}
+
+case $framework in
+  quarkus)
+    port=8701
+    jar=quarkus-app/target/quarkus-app/quarkus-run.jar
+    default_flag="-Dquarkus.profile=prod"
+    perf_flag="-Dquarkus.profile=prod,perf"
+    ;;
+  micronaut)
+    port=8702
+    jar=micronaut-app/target/micronaut-app-0.1.jar
+    default_flag=""
+    perf_flag="-Dmicronaut.environments=perf"
+    ;;
+  springboot)
+    port=8703
+    jar=springboot-app/target/springboot-app-1.0.0-SNAPSHOT.jar
+    default_flag=""
+    perf_flag="-Dspring.profiles.active=perf"
+    ;;
+  *)
+    echo "Usage: ./$(basename "$0") quarkus|micronaut|springboot [rows] [concurrency] [requests]"
+    exit 1
+    ;;
+esac
+
+base="http://localhost:$port/$framework"
+body=$(mktemp)
+awk -v rows="$rows" 'BEGIN {
+  for (i = 0; i < rows; i++) {
+    printf "{\"type\":\"CPU\",\"parameter\":\"%d\",\"duration\":\"PT0.%03dS\",\"description\":\"jdbc-perf\"}\n", i % 100, i % 1000
+  }
+}' > "$body"
+# One curl process sends all the single inserts, so the client does not fork per request
+urls=$(mktemp)
+for i in $(seq "$requests"); do
+  echo "url = \"$base/cpu?iterations=0&db=true&desc=jdbc-perf\""
+  echo "output = /dev/null"
+done > "$urls"
+
+run() {
+  profile=$1
+  java $2 -jar "$jar" > "$framework-app/target/jdbc-perf-$profile.log" 2>&1 &
+  pid=$!
+  until curl -s -o /dev/null "$base"; do sleep 0.5; done
+
+  bulk=$(curl -s -X POST -H 'Content-Type: application/x-ndjson' --data-binary @"$body" "$base/stats/batch")
+  millis=$(echo "$bulk" | sed -E 's/.*"millis":([0-9.]+).*/\1/')
+
+  start=$(date +%s%N)
+  curl -s --no-progress-meter --parallel --parallel-max "$concurrency" --config "$urls"
+  end=$(date +%s%N)
+  # Write-behind answers before the insert, so wait for the queue to be flushed
+  until curl -s "$base/stats/writer" | grep -q '"queueDepth":0'; do sleep 0.1; done
+  flushed=$(date +%s%N)
+  kill $pid && wait $pid 2>/dev/null || true
+
+  awk -v profile="$profile" -v rows="$rows" -v millis="$millis" -v requests="$requests" \
+      -v start="$start" -v end="$end" -v flushed="$flushed" 'BEGIN {
+    printf "| %-7s | %13.0f | %14.0f | %15.0f |\n", profile, rows / millis * 1000,
+      requests / (end - start) * 1e9, requests / (flushed - start) * 1e9
+  }'
+}
+
+echo "$framework: $rows rows through /stats/batch, then $requests requests to /cpu?db=true from $concurrency concurrent clients"
+echo
+echo "| Profile | Bulk (rows/s) | Single (req/s) | Single (rows/s) |"
+echo "|---------|---------------|----------------|-----------------|"
+run default "$default_flag"
+run perf "$perf_flag"
+rm -f "$body" "$urls"
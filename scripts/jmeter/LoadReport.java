@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns the CSV results of the open-model load test into a JSON report,
+ * with the throughput, latency percentiles and latency histogram of each sampler of each framework.
+ * {@code java LoadReport.java target/jmeter/results/open-model.csv 10 > target/load-report.json}
+ */
+public class LoadReport {
+
+    // Upper bounds of the histogram buckets, in milliseconds
+    private static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java LoadReport.java <results.csv> [warmup seconds]");
+            System.exit(1);
+        }
+        List<String> lines = Files.readAllLines(Path.of(args[0]));
+        long warmupMillis = args.length > 1 ? Long.parseLong(args[1]) * 1000 : 0;
+
+        List<String> header = parse(lines.get(0));
+        int timeStamp = header.indexOf("timeStamp");
+        int elapsed = header.indexOf("elapsed");
+        int label = header.indexOf("label");
+        int success = header.indexOf("success");
+
+        // framework -> sampler -> samples
+        Map<String, Map<String, Sampler>> frameworks = new TreeMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> fields = parse(line);
+            String[] names = fields.get(label).split(":", 2);
+            Sampler sampler = frameworks.computeIfAbsent(names[0], k -> new TreeMap<>())
+                .computeIfAbsent(names.length > 1 ? names[1] : names[0], k -> new Sampler());
+            sampler.add(Long.parseLong(fields.get(timeStamp)), Long.parseLong(fields.get(elapsed)),
+                Boolean.parseBoolean(fields.get(success)), warmupMillis);
+        }
+
+        StringBuilder json = new StringBuilder("{\n  \"warmupSeconds\": ").append(warmupMillis / 1000).append(",\n  \"frameworks\": {");
+        String frameworkSeparator = "\n";
+        for (Map.Entry<String, Map<String, Sampler>> framework : frameworks.entrySet()) {
+            json.append(frameworkSeparator).append("    \"").append(framework.getKey()).append("\": {");
+            String samplerSeparator = "\n";
+            for (Map.Entry<String, Sampler> sampler : framework.getValue().entrySet()) {
+                json.append(samplerSeparator).append("      \"").append(sampler.getKey()).append("\": ");
+                sampler.getValue().appendTo(json);
+                samplerSeparator = ",\n";
+            }
+            json.append("\n    }");
+            frameworkSeparator = ",\n";
+        }
+        json.append("\n  }\n}");
+        System.out.println(json);
+    }
+
+    private static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                field.append('"');
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static class Sampler {
+
+        private long firstStart = Long.MAX_VALUE;
+        private long measuredStart = Long.MAX_VALUE;
+        private long lastEnd;
+        private long errors;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long warmupSamples;
+
+        void add(long start, long elapsed, boolean success, long warmupMillis) {
+            firstStart = Math.min(firstStart, start);
+            if (start < firstStart + warmupMillis) {
+                warmupSamples++;
+                return;
+            }
+            measuredStart = Math.min(measuredStart, start);
+            lastEnd = Math.max(lastEnd, start + elapsed);
+            if (!success) {
+                errors++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = elapsed;
+        }
+
+        void appendTo(StringBuilder json) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            double seconds = count == 0 ? 0 : Math.max(lastEnd - measuredStart, 1) / 1000.0;
+            double mean = count == 0 ? 0 : Arrays.stream(sorted).average().orElse(0);
+            json.append(String.format(Locale.ROOT,
+                "{\"samples\": %d, \"errors\": %d, \"warmupSamples\": %d, \"throughput\": %.2f, "
+                    + "\"latencyMillis\": {\"mean\": %.1f, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d}, \"histogram\": [",
+                count, errors, warmupSamples, count == 0 ? 0 : count / seconds,
+                mean, percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99), count == 0 ? 0 : sorted[count - 1]));
+            int from = 0;
+            for (int i = 0; i <= BUCKETS.length; i++) {
+                int to = from;
+                while (to < count && (i == BUCKETS.length || sorted[to] <= BUCKETS[i])) {
+                    to++;
+                }
+                json.append(i == 0 ? "" : ", ")
+                    .append("{\"le\": ").append(i == BUCKETS.length ? "\"+Inf\"" : BUCKETS[i])
+                    .append(", \"count\": ").append(to - from).append('}');
+                from = to;
+            }
+            json.append("]}");
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+        }
+    }
+}
@@ -0,0 +1,77 @@
+#!/usr/bin/env bash
+##############################################################################
+# Usage: ./local.sh [arrival rate] [duration] [warmup]
+# Starts a local Postgres and the three apps, sends requests at [arrival rate]
+# per second (10) to each sampler of each app for [warmup] (10) + [duration] (30)
+# seconds, one sampler after the other, and writes target/load-report.json.
+# Build the apps first (mvn package -DskipTests in each of them).
+##############################################################################
+# Dependencies: Java 17, Maven, and the Postgres binaries (initdb, pg_ctl, psql)
+# or Docker with the postgres:14 image
+##############################################################################
+
+set -e
+cd $(dirname ${BASH_SOURCE[0]})
+root=$(cd ../.. && pwd)
+
+rate=${1:-10}
+duration=${2:-30}
+warmup=${3:-10}
+maven_args=${MAVEN_ARGS:--o}
+
+mkdir -p target
+pids=()
+
+cleanup() {
+  for pid in "${pids[@]}"; do
+    kill $pid 2>/dev/null || true
+  done
+  if [ -n "$pg_ctl" ]; then
+    "$pg_ctl" -D target/postgres stop -m fast > /dev/null || true
+  elif [ "$docker" == "true" ]; then
+    docker compose -f "$root/infrastructure/postgres.yaml" down > /dev/null || true
+  fi
+}
+trap cleanup EXIT
+
+# Postgres: the local binaries on a throw-away data directory, or the Docker Compose database
+pg_bin=${PG_BIN:-$(dirname "$(command -v pg_ctl || ls -d /usr/lib/postgresql/*/bin/pg_ctl 2>/dev/null | tail -1)")}
+if [ -x "$pg_bin/pg_ctl" ]; then
+  pg_ctl="$pg_bin/pg_ctl"
+  rm -rf target/postgres
+  "$pg_bin/initdb" -D target/postgres -U postgres --auth=trust > target/postgres-init.log
+  "$pg_ctl" -D target/postgres -o "-p 5432 -k /tmp" -l target/postgres.log -w start > /dev/null
+  "$pg_bin/psql" -q -h localhost -U postgres -f "$root/infrastructure/db-init/initialize-databases.sql" > /dev/null
+elif command -v docker > /dev/null; then
+  docker=true
+  docker compose -f "$root/infrastructure/postgres.yaml" up -d --wait
+else
+  echo "Install the Postgres binaries (or set PG_BIN), or Docker with the postgres:14 image"
+  exit 1
+fi
+
+start() {
+  framework=$1
+  port=$2
+  jar=$root/$3
+  if [ ! -f "$jar" ]; then
+    echo "$jar is missing, run mvn package -DskipTests in $framework-app"
+    exit 1
+  fi
+  java -jar "$jar" > "target/$framework.log" 2>&1 &
+  pids+=($!)
+  until curl -s -o /dev/null "http://localhost:$port/$framework"; do sleep 0.5; done
+  echo "$framework is up on port $port"
+}
+
+start quarkus 8701 quarkus-app/target/quarkus-app/quarkus-run.jar
+start micronaut 8702 micronaut-app/target/micronaut-app-0.1.jar
+start springboot 8703 springboot-app/target/springboot-app-1.0.0-SNAPSHOT.jar
+
+rm -rf target/jmeter/results target/jmeter/reports
+status=0
+mvn -B $maven_args -Plocal verify -Dload.arrival-rate=$rate -Dload.duration=$duration -Dload.warmup=$warmup || status=$?
+
+java LoadReport.java target/jmeter/results/open-model.csv $warmup > target/load-report.json
+echo "Report: $(pwd)/target/load-report.json, dashboard: $(pwd)/target/jmeter/reports/open-model/index.html"
+exit $status
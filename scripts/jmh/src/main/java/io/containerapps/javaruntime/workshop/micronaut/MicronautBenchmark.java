@@ -0,0 +1,103 @@
+package io.containerapps.javaruntime.workshop.micronaut;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Micronaut workloads and Statistics outside of the HTTP stack.
+ * {@code java -jar target/benchmarks.jar Micronaut -prof gc}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MicronautBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Cpu {
+        @Param({"1", "10"})
+        long iterations;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Memory {
+        @Param({"1", "10"})
+        int bites;
+        @Param({"hashmap", "array", "direct", "mapped"})
+        String strategy;
+        MemoryStrategy memoryStrategy;
+
+        @Setup
+        public void setUp() {
+            memoryStrategy = MemoryStrategy.of(strategy);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Json {
+        @Param({"1", "1000"})
+        int rows;
+        List<Statistics> statistics;
+        ObjectMapper mapper;
+
+        @Setup
+        public void setUp() {
+            statistics = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                statistics.add(statistics(i));
+            }
+            // Micronaut registers the Java time module on its Jackson ObjectMapper
+            mapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        }
+    }
+
+    @Benchmark
+    public void cpu(Cpu state) {
+        CpuWorkload.burn(state.iterations * 20000);
+    }
+
+    @Benchmark
+    public long memory(Memory state) {
+        return state.memoryStrategy.eat(state.bites);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String json(Json state) throws JsonProcessingException {
+        return state.rows == 1 ? state.mapper.writeValueAsString(state.statistics.get(0)) : state.mapper.writeValueAsString(state.statistics);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Statistics entity() {
+        return statistics(10);
+    }
+
+    private static Statistics statistics(long iterations) {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = Long.toString(iterations);
+        statistics.duration = Duration.ofMillis(iterations * 20);
+        statistics.description = "jmh";
+        return statistics;
+    }
+}
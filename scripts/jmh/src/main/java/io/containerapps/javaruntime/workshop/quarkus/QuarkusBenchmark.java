@@ -0,0 +1,106 @@
+package io.containerapps.javaruntime.workshop.quarkus;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Quarkus workloads and Statistics outside of the HTTP stack.
+ * {@code java -jar target/benchmarks.jar Quarkus -prof gc}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuarkusBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Cpu {
+        @Param({"1", "10"})
+        long iterations;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Memory {
+        @Param({"1", "10"})
+        int bites;
+        @Param({"hashmap", "array", "direct", "mapped"})
+        String strategy;
+        MemoryStrategy memoryStrategy;
+
+        @Setup
+        public void setUp() {
+            memoryStrategy = MemoryStrategy.of(strategy);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Json {
+        @Param({"1", "1000"})
+        int rows;
+        List<Statistics> statistics;
+        Jsonb jsonb;
+
+        @Setup
+        public void setUp() {
+            statistics = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                statistics.add(statistics(i));
+            }
+            jsonb = JsonbBuilder.create();
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            jsonb.close();
+        }
+    }
+
+    @Benchmark
+    public void cpu(Cpu state) {
+        CpuWorkload.burn(state.iterations * 20000);
+    }
+
+    @Benchmark
+    public long memory(Memory state) {
+        return state.memoryStrategy.eat(state.bites);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String json(Json state) {
+        return state.rows == 1 ? state.jsonb.toJson(state.statistics.get(0)) : state.jsonb.toJson(state.statistics);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Statistics entity() {
+        return statistics(10);
+    }
+
+    private static Statistics statistics(long iterations) {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = Long.toString(iterations);
+        statistics.duration = Duration.ofMillis(iterations * 20);
+        statistics.description = "jmh";
+        return statistics;
+    }
+}
@@ -0,0 +1,108 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Spring Boot workloads and Statistics outside of the HTTP stack.
+ * {@code java -jar target/benchmarks.jar Springboot -prof gc}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpringbootBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Cpu {
+        @Param({"1", "10"})
+        long iterations;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Memory {
+        @Param({"1", "10"})
+        int bites;
+        @Param({"hashmap", "array", "direct", "mapped"})
+        String strategy;
+        MemoryStrategy memoryStrategy;
+
+        @Setup
+        public void setUp() {
+            memoryStrategy = MemoryStrategy.of(strategy);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Json {
+        @Param({"1", "1000"})
+        int rows;
+        List<Statistics> statistics;
+        ObjectMapper mapper;
+
+        @Setup
+        public void setUp() {
+            statistics = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                statistics.add(statistics(i));
+            }
+            // Spring Boot writes dates and durations as ISO-8601 strings
+            mapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+                .build();
+        }
+    }
+
+    @Benchmark
+    public void cpu(Cpu state) {
+        CpuWorkload.burn(state.iterations * 20000);
+    }
+
+    @Benchmark
+    public long memory(Memory state) {
+        return state.memoryStrategy.eat(state.bites);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String json(Json state) throws JsonProcessingException {
+        return state.rows == 1 ? state.mapper.writeValueAsString(state.statistics.get(0)) : state.mapper.writeValueAsString(state.statistics);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Statistics entity() {
+        return statistics(10);
+    }
+
+    private static Statistics statistics(long iterations) {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = Long.toString(iterations);
+        statistics.duration = Duration.ofMillis(iterations * 20);
+        statistics.description = "jmh";
+        return statistics;
+    }
+}
@@ -0,0 +1,111 @@
+#!/usr/bin/env bash
+##############################################################################
+# Usage: ./compare.sh quarkus|micronaut|springboot [runs]
+# Starts an app several times: on a cold JVM, with the AppCDS archive and from
+# the CRaC checkpoint of train.sh, and as a native executable. Prints the median
+# time to the first response, resident memory, peak throughput and time to
+# reach 90% of it of each mode. Modes that are not built are skipped.
+# Build the app first (mvn package -DskipTests, and mvn -Pnative package -DskipTests
+# for the executable) and start the database.
+##############################################################################
+# Dependencies: Java 17 (a JDK with CRaC for crac), curl 7.66+, awk, lsof
+##############################################################################
+
+set -e
+cd $(dirname ${BASH_SOURCE[0]})
+cd ../..
+
+framework=${1}
+runs=${2:-5}
+windows=${WINDOWS:-10}
+batch=${BATCH:-100}
+
+case $framework in
+  quarkus)
+    port=8701
+    jar=quarkus-app/target/quarkus-app/quarkus-run.jar
+    executable=quarkus-app/target/quarkus-app-1.0.0-SNAPSHOT-runner
+    ;;
+  micronaut)
+    port=8702
+    jar=micronaut-app/target/micronaut-app-0.1.jar
+    executable=micronaut-app/target/micronaut-app
+    ;;
+  springboot)
+    port=8703
+    jar=springboot-app/target/springboot-app-1.0.0-SNAPSHOT.jar
+    executable=springboot-app/target/springboot-app
+    ;;
+  *)
+    echo "Usage: ./$(basename "$0") quarkus|micronaut|springboot [runs]"
+    exit 1
+    ;;
+esac
+
+dir=$framework-app/target/startup
+base="http://localhost:$port/$framework"
+samples=$(mktemp)
+# The same mix of requests as the warmup of train.sh
+urls=$(mktemp)
+for i in $(seq "$batch"); do
+  case $((i % 3)) in
+    0) echo "url = \"$base/cpu?iterations=1&kernel=hash\"" ;;
+    1) echo "url = \"$base/memory?bites=1\"" ;;
+    2) echo "url = \"$base/stats?limit=100\"" ;;
+  esac
+  echo "output = /dev/null"
+done > "$urls"
+
+run() {
+  mode=$1
+  artifact=$2
+  shift 2
+  if [ ! -e "$artifact" ]; then
+    echo "| $(printf '%-6s' "$mode") | not built: $artifact"
+    return
+  fi
+  : > "$samples"
+  for i in $(seq "$runs"); do
+    start=$(date +%s%N)
+    "$@" > "$framework-app/target/startup-$mode.log" 2>&1 &
+    pid=$!
+    until curl -s -o /dev/null "$base"; do sleep 0.01; done
+    first=$(date +%s%N)
+    # A restored process is not always the child of the launcher, so look for the one listening on the port
+    listener=$(lsof -t -i tcp:$port -s tcp:LISTEN | head -1)
+    # Resident memory once the first request is served, before any load
+    rss=$(awk '/^VmRSS/ { print $2 }' /proc/$listener/status)
+
+    # Throughput of successive batches, with the time since the launch when each one ends
+    for w in $(seq "$windows"); do
+      from=$(date +%s%N)
+      curl -s --no-progress-meter --parallel --parallel-max 4 --config "$urls"
+      to=$(date +%s%N)
+      echo "$(( (to - start) / 1000000 )) $(( batch * 1000000000 / (to - from) ))"
+    done | awk -v ms=$(( (first - start) / 1000000 )) -v rss="$rss" '
+      { at[NR] = $1; throughput[NR] = $2; if ($2 > peak) peak = $2 }
+      END {
+        for (i = 1; throughput[i] < peak * 0.9; i++);
+        print ms, rss, peak, at[i]
+      }' >> "$samples"
+    kill $listener $pid 2>/dev/null || true
+    wait $pid 2>/dev/null || true
+    while lsof -t -i tcp:$port -s tcp:LISTEN > /dev/null; do sleep 0.1; done
+  done
+  printf "| %-6s | %19d | %12d | %16d | %8.1f |\n" "$mode" \
+    $(median 1) $(median 3) $(median 4) $(echo "$(median 2) / 1024" | awk '{ print $1 / $3 }')
+}
+
+median() {
+  sort -n -k$1 "$samples" | awk -v c=$1 '{ v[NR] = $c } END { print v[int((NR + 1) / 2)] }'
+}
+
+echo "$framework: median of $runs starts, first response of $base, then $windows batches of $batch requests"
+echo
+echo "| Mode   | First response (ms) | Peak (req/s) | 90% of peak (ms) | RSS (MB) |"
+echo "|--------|---------------------|--------------|------------------|----------|"
+run jvm "$jar" java $JAVA_OPTS -jar "$jar"
+run appcds "$dir/app-cds.jsa" java -XX:SharedArchiveFile="$dir/app-cds.jsa" $JAVA_OPTS -jar "$jar"
+run crac "$dir/crac" java -XX:CRaCRestoreFrom="$dir/crac"
+run native "$executable" "$executable"
+rm -f "$samples" "$urls"
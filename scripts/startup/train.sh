@@ -0,0 +1,91 @@
+#!/usr/bin/env bash
+##############################################################################
+# Usage: ./train.sh quarkus|micronaut|springboot appcds|crac [requests]
+# Starts an app on the JVM, warms it up with /cpu, /memory and /stats, then
+# - appcds: stops it, the JVM dumps the classes it loaded in an AppCDS archive
+# - crac: checkpoints it with CRaC, to restore it already warm
+# in target/startup, where compare.sh finds them.
+# Build the app first (mvn package -DskipTests) and start the database.
+##############################################################################
+# Dependencies: Java 17 (a JDK with CRaC for crac), curl 7.66+
+##############################################################################
+
+set -e
+cd $(dirname ${BASH_SOURCE[0]})
+cd ../..
+
+framework=${1}
+mode=${2}
+requests=${3:-1000}
+
+case $framework in
+  quarkus)
+    port=8701
+    jar=quarkus-app/target/quarkus-app/quarkus-run.jar
+    crac_flag=""
+    ;;
+  micronaut)
+    port=8702
+    jar=micronaut-app/target/micronaut-app-0.1.jar
+    crac_flag="-Dmicronaut.environments=crac"
+    ;;
+  springboot)
+    port=8703
+    jar=springboot-app/target/springboot-app-1.0.0-SNAPSHOT.jar
+    crac_flag=""
+    ;;
+  *)
+    echo "Usage: ./$(basename "$0") quarkus|micronaut|springboot appcds|crac [requests]"
+    exit 1
+    ;;
+esac
+
+dir=$framework-app/target/startup
+case $mode in
+  appcds)
+    rm -f "$dir/app-cds.jsa"
+    flags="-XX:ArchiveClassesAtExit=$dir/app-cds.jsa"
+    ;;
+  crac)
+    rm -rf "$dir/crac"
+    flags="-XX:CRaCCheckpointTo=$dir/crac $crac_flag"
+    if ! java $flags -version > /dev/null 2>&1; then
+      echo "$(java -version 2>&1 | head -1) doesn't support CRaC, use a JDK with CRaC such as Azul Zulu with CRaC"
+      exit 1
+    fi
+    ;;
+  *)
+    echo "Usage: ./$(basename "$0") quarkus|micronaut|springboot appcds|crac [requests]"
+    exit 1
+    ;;
+esac
+mkdir -p "$dir"
+
+base="http://localhost:$port/$framework"
+urls=$(mktemp)
+for i in $(seq "$requests"); do
+  case $((i % 3)) in
+    0) echo "url = \"$base/cpu?iterations=1&kernel=hash\"" ;;
+    1) echo "url = \"$base/memory?bites=1\"" ;;
+    2) echo "url = \"$base/stats?limit=100\"" ;;
+  esac
+  echo "output = /dev/null"
+done > "$urls"
+
+java $flags $JAVA_OPTS -jar "$jar" > "$dir/train-$mode.log" 2>&1 &
+pid=$!
+until curl -s -o /dev/null "$base"; do sleep 0.5; done
+echo "$framework: warming up with $requests requests"
+curl -s --no-progress-meter --parallel --parallel-max 4 --config "$urls"
+rm -f "$urls"
+
+if [ "$mode" == "appcds" ]; then
+  # The archive is written when the JVM exits
+  kill $pid
+  wait $pid 2>/dev/null || true
+  echo "$framework: $(du -h "$dir/app-cds.jsa" | cut -f1) archive in $dir/app-cds.jsa"
+else
+  jcmd $pid JDK.checkpoint > /dev/null
+  wait $pid 2>/dev/null || true
+  echo "$framework: $(du -sh "$dir/crac" | cut -f1) checkpoint in $dir/crac"
+fi
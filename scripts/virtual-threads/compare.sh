@@ -0,0 +1,81 @@
+#!/usr/bin/env bash
+##############################################################################
+# Usage: ./compare.sh quarkus|micronaut|springboot [concurrency] [requests]
+# Runs the same load against an app with and without virtual threads, and
+# prints the throughput, p50/p99 latency and most requests in flight of each run.
+# Build the app first (mvn package -DskipTests) and start the database if DB=true.
+##############################################################################
+# Dependencies: Java 21, curl, awk
+##############################################################################
+
+set -e
+cd $(dirname ${BASH_SOURCE[0]})
+cd ../..
+
+framework=${1}
+concurrency=${2:-200}
+requests=${3:-2000}
+pool=${POOL:-16}
+path=${WORKLOAD_PATH:-cpu?iterations=5}
+if [ "$DB" == "true" ]; then
+  path="$path&db=true&desc=virtual-threads"
+fi
+
+case $framework in
+  quarkus)
+    port=8701
+    jar=quarkus-app/target/quarkus-app/quarkus-run.jar
+    pool_flag="-Dquarkus.thread-pool.max-threads=$pool"
+    virtual_flag="-Dworkload.virtual-threads.enabled"
+    ;;
+  micronaut)
+    port=8702
+    jar=micronaut-app/target/micronaut-app-0.1.jar
+    pool_flag="-Dmicronaut.executors.io.type=fixed -Dmicronaut.executors.io.n-threads=$pool"
+    virtual_flag="-Dworkload.virtual-threads.enabled"
+    ;;
+  springboot)
+    port=8703
+    jar=springboot-app/target/springboot-app-1.0.0-SNAPSHOT.jar
+    pool_flag="-Dserver.tomcat.threads.max=$pool"
+    virtual_flag="-Dspring.threads.virtual.enabled"
+    ;;
+  *)
+    echo "Usage: ./$(basename "$0") quarkus|micronaut|springboot [concurrency] [requests]"
+    exit 1
+    ;;
+esac
+
+url="http://localhost:$port/$framework/$path"
+timings=$(mktemp)
+
+run() {
+  mode=$1
+  java $pool_flag $virtual_flag=$2 -jar "$jar" > "$framework-app/target/virtual-threads-$mode.log" 2>&1 &
+  pid=$!
+  until curl -s -o /dev/null "http://localhost:$port/$framework"; do sleep 0.5; done
+
+  seq "$requests" | xargs -P "$concurrency" -I{} sh -c \
+    'start=$(date +%s%N); curl -s -o /dev/null "$0"; echo "$start $(date +%s%N)"' "$url" > "$timings"
+  kill $pid && wait $pid 2>/dev/null || true
+
+  window=$(awk '{ if (first == "" || $1 < first) first = $1; if ($2 > last) last = $2 } END { print (last - first) / 1e9 }' "$timings")
+  # Sweeps the starts (+1) and ends (-1) of the requests in time order, an end before a start at the same
+  # nanosecond, and keeps the highest number of requests in flight
+  concurrent=$(awk '{ print $1, 1; print $2, -1 }' "$timings" | sort -k1,1n -k2,2n |
+    awk '{ current += $2; if (current > max) max = current } END { print max }')
+  awk '{ printf "%.0f\n", $2 - $1 }' "$timings" | sort -n | awk -v mode="$mode" -v window="$window" -v concurrent="$concurrent" '
+    { latency[NR] = $1 }
+    END {
+      printf "| %-8s | %10.1f | %8.1f | %8.1f | %10d |\n", mode, NR / window,
+        latency[int(NR * 0.5)] / 1e6, latency[int(NR * 0.99)] / 1e6, concurrent
+    }'
+}
+
+echo "$framework: $requests requests to $url, $concurrency concurrent clients, worker pool of $pool"
+echo
+echo "| Mode     | Throughput | p50 (ms) | p99 (ms) | Concurrent |"
+echo "|----------|------------|----------|----------|------------|"
+run platform false
+run virtual true
+rm -f "$timings"
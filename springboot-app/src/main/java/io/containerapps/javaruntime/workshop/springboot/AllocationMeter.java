@@ -0,0 +1,52 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Measures the heap bytes allocated by the current thread, and the garbage collections of the whole JVM,
+ * between its creation and the calls to its getters.
+ */
+final class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final long allocatedBytes;
+    private final long gcCount;
+    private final long gcMillis;
+
+    private AllocationMeter() {
+        this.allocatedBytes = THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+        this.gcCount = COLLECTORS.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+        this.gcMillis = COLLECTORS.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    static AllocationMeter start() {
+        return new AllocationMeter();
+    }
+
+    /**
+     * @return the bytes allocated on the heap by the current thread, or -1 if the JVM can't tell.
+     */
+    long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes() - allocatedBytes;
+    }
+
+    long gcCount() {
+        return COLLECTORS.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum() - gcCount;
+    }
+
+    long gcMillis() {
+        return COLLECTORS.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum() - gcMillis;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+            && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+}
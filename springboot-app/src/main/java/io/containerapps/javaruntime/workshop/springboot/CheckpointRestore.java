@@ -0,0 +1,79 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.lang.System.Logger;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Closes the sockets of the app before a CRaC checkpoint ({@code jcmd <pid> JDK.checkpoint}) and opens them again after
+ * the restore: the Tomcat connectors and the connections of the Hikari pool.
+ * Spring Boot 3.2 supports CRaC natively, this component backports it. On a JVM without CRaC it is never called.
+ */
+@Component
+class CheckpointRestore implements Resource, TomcatConnectorCustomizer {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    private final ApplicationContext applicationContext;
+    private final HikariDataSource dataSource;
+    private int minimumIdle;
+
+    CheckpointRestore(ApplicationContext applicationContext, HikariDataSource dataSource) {
+        this.applicationContext = applicationContext;
+        this.dataSource = dataSource;
+        Core.getGlobalContext().register(this);
+    }
+
+    @Override
+    public void customize(Connector connector) {
+        // Binds the port when the connector starts rather than when it is created, so stopping it releases the port
+        connector.setProperty("bindOnInit", "false");
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) throws Exception {
+        LOGGER.log(INFO, "Spring Boot: closing the connectors and the database connections before the checkpoint");
+        for (Connector connector : connectors()) {
+            connector.stop();
+        }
+        // Keeps the pool from opening new connections, then closes the idle ones
+        minimumIdle = dataSource.getMinimumIdle();
+        dataSource.getHikariConfigMXBean().setMinimumIdle(0);
+        dataSource.getHikariPoolMXBean().softEvictConnections();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (dataSource.getHikariPoolMXBean().getTotalConnections() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) throws LifecycleException {
+        dataSource.getHikariConfigMXBean().setMinimumIdle(minimumIdle);
+        for (Connector connector : connectors()) {
+            connector.start();
+        }
+        LOGGER.log(INFO, "Spring Boot: restored, the connectors are started again");
+    }
+
+    private Connector[] connectors() {
+        if (applicationContext instanceof WebServerApplicationContext context
+            && context.getWebServer() instanceof TomcatWebServer webServer) {
+            return webServer.getTomcat().getService().findConnectors();
+        }
+        return new Connector[0];
+    }
+}
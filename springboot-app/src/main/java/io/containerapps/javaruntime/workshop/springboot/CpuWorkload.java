@@ -0,0 +1,165 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The CPU workload: runs a kernel over the iterations, sequentially or split in slices forked in the common ForkJoinPool,
+ * whose size follows the number of processors the JVM sees ({@code -XX:ActiveProcessorCount}).
+ */
+final class CpuWorkload {
+
+    static final int MAX_PARALLELISM = 256;
+
+    private CpuWorkload() {
+    }
+
+    static void burn(long iterations) {
+        while (iterations > 0) {
+            if (iterations % 20000 == 0) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ie) {
+                }
+            }
+            iterations--;
+        }
+    }
+
+    /**
+     * Runs the kernel over the iterations, in {@code parallelism} slices of about the same size.
+     *
+     * @return the checksum of the kernel, so the JIT can't drop the computation.
+     */
+    static long burn(long iterations, Kernel kernel, int parallelism) {
+        if (parallelism <= 1) {
+            return kernel.run(0, iterations);
+        }
+        return ForkJoinPool.commonPool().invoke(new Slices(kernel, iterations, parallelism));
+    }
+
+    /**
+     * What each iteration does.
+     */
+    enum Kernel {
+
+        /**
+         * The historical loop: sleeps 20 ms every 20,000 iterations, so it mostly waits.
+         * A managed blocker, so the ForkJoinPool adds workers for the other slices while a slice sleeps.
+         */
+        SLEEP {
+            @Override
+            long run(long from, long to) {
+                try {
+                    ForkJoinPool.managedBlock(new Sleeper(to - from));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                return to - from;
+            }
+        },
+
+        /**
+         * Mixes a 64 bits state with each iteration (SplitMix64 finalizer), integer multiplications and shifts only.
+         */
+        HASH {
+            @Override
+            long run(long from, long to) {
+                long hash = 0;
+                for (long i = from; i < to; i++) {
+                    long z = hash + i * 0x9E3779B97F4A7C15L;
+                    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                    hash = z ^ (z >>> 31);
+                }
+                return hash;
+            }
+        },
+
+        /**
+         * Sums the square roots of the iterations, floating point divisions and square roots.
+         */
+        SUM {
+            @Override
+            long run(long from, long to) {
+                double sum = 0;
+                for (long i = from; i < to; i++) {
+                    sum += Math.sqrt(i) / (i + 1);
+                }
+                return Double.doubleToLongBits(sum);
+            }
+        };
+
+        /**
+         * @return the checksum of the iterations from {@code from} inclusive to {@code to} exclusive.
+         */
+        abstract long run(long from, long to);
+
+        static Kernel of(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Runs the historical loop once, on behalf of {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}.
+     */
+    private static final class Sleeper implements ForkJoinPool.ManagedBlocker {
+
+        private final long iterations;
+        private boolean done;
+
+        private Sleeper(long iterations) {
+            this.iterations = iterations;
+        }
+
+        @Override
+        public boolean block() {
+            burn(iterations);
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+
+    /**
+     * Forks the slices from {@code first} to {@code last} exclusive by halves, so idle workers steal the larger halves first.
+     */
+    private static final class Slices extends RecursiveTask<Long> {
+
+        private final Kernel kernel;
+        private final long iterations;
+        private final int first;
+        private final int last;
+        private final int slices;
+
+        private Slices(Kernel kernel, long iterations, int slices) {
+            this(kernel, iterations, 0, slices, slices);
+        }
+
+        private Slices(Kernel kernel, long iterations, int first, int last, int slices) {
+            this.kernel = kernel;
+            this.iterations = iterations;
+            this.first = first;
+            this.last = last;
+            this.slices = slices;
+        }
+
+        @Override
+        protected Long compute() {
+            if (last - first == 1) {
+                long slice = iterations / slices;
+                return kernel.run(first * slice, last == slices ? iterations : last * slice);
+            }
+            int middle = (first + last) >>> 1;
+            Slices left = new Slices(kernel, iterations, first, middle, slices);
+            left.fork();
+            long right = new Slices(kernel, iterations, middle, last, slices).compute();
+            return left.join() ^ right;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Serializes 100 Statistics to JSON, then parses them back, with the ObjectMapper of Spring Boot, the one of /stats.
+ */
+@Component
+class JsonWorkload implements Workload {
+
+    private final ObjectMapper objectMapper;
+    private final Statistics[] payload = new Statistics[100];
+
+    JsonWorkload(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        Instant doneAt = Instant.parse("2026-10-18T01:00:00Z");
+        for (int i = 0; i < payload.length; i++) {
+            Statistics statistics = new Statistics();
+            statistics.setId((long) i);
+            statistics.doneAt = doneAt.plusMillis(i * 37L);
+            statistics.type = Type.values()[i % 2];
+            statistics.parameter = Integer.toString(i * 10);
+            statistics.duration = Duration.ofNanos(20_000_000L + i * 12_345L);
+            statistics.description = i % 3 == 0 ? null : "java17";
+            payload[i] = statistics;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public Type type() {
+        return Type.JSON;
+    }
+
+    @Override
+    public long run(int size) {
+        long checksum = 0;
+        try {
+            for (int unit = 0; unit < size; unit++) {
+                byte[] json = objectMapper.writeValueAsBytes(payload);
+                Statistics[] parsed = objectMapper.readValue(json, Statistics[].class);
+                checksum += json.length + parsed[unit % parsed.length].duration.toNanos();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return checksum;
+    }
+}
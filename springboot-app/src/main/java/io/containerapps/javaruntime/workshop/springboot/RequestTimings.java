@@ -0,0 +1,107 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Times the phases of one request with {@link System#nanoTime()}, each phase starting where the previous one ended.
+ * Not thread-safe, the phases of a request are ended one after the other.
+ * The phases are kept in arrays and written as text without {@code String.format}, so timing a request allocates
+ * little more than the text itself.
+ */
+final class RequestTimings {
+
+    static final String SERVER_TIMING = "Server-Timing";
+
+    private final long start = System.nanoTime();
+    private long mark = start;
+    private long totalNanos = -1;
+    // In the order they first ended, a request has 1 or 2 of them
+    private String[] phases = new String[2];
+    private long[] nanos = new long[2];
+    private int count;
+
+    static RequestTimings start() {
+        return new RequestTimings();
+    }
+
+    /**
+     * Ends the phase that started at the end of the previous one, or at the start of the request.
+     *
+     * @return the duration of the phase, in nanoseconds.
+     */
+    long end(String phase) {
+        long now = System.nanoTime();
+        long elapsed = now - mark;
+        int i = 0;
+        while (i < count && !phases[i].equals(phase)) {
+            i++;
+        }
+        if (i == count) {
+            if (count == phases.length) {
+                phases = Arrays.copyOf(phases, count * 2);
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            phases[count++] = phase;
+        }
+        nanos[i] += elapsed;
+        mark = now;
+        return elapsed;
+    }
+
+    /**
+     * Stops the clock of the request.
+     *
+     * @return the duration of the request, in nanoseconds.
+     */
+    long stop() {
+        if (totalNanos < 0) {
+            totalNanos = System.nanoTime() - start;
+        }
+        return totalNanos;
+    }
+
+    void forEachPhase(ObjLongConsumer<String> action) {
+        for (int i = 0; i < count; i++) {
+            action.accept(phases[i], nanos[i]);
+        }
+    }
+
+    /**
+     * @return the phases and the total, in milliseconds, as the value of a Server-Timing header.
+     */
+    String serverTiming() {
+        StringBuilder header = new StringBuilder(24 * (count + 1));
+        for (int i = 0; i < count; i++) {
+            appendMillis(header.append(phases[i]).append(";dur="), nanos[i]).append(", ");
+        }
+        return appendMillis(header.append("total;dur="), stop()).toString();
+    }
+
+    /**
+     * Appends the phases, in milliseconds, to be read by a human.
+     */
+    StringBuilder describe(StringBuilder description) {
+        description.append('(');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                description.append(", ");
+            }
+            appendMillis(description.append(phases[i]).append(' '), nanos[i]).append(" ms");
+        }
+        return description.append(')');
+    }
+
+    /**
+     * Appends the nanoseconds in milliseconds with 3 decimals, rounded half up as {@code %.3f}.
+     */
+    private static StringBuilder appendMillis(StringBuilder text, long nanos) {
+        long micros = (nanos + 500) / 1_000;
+        long fraction = micros % 1_000;
+        text.append(micros / 1_000).append('.');
+        if (fraction < 100) {
+            text.append(fraction < 10 ? "00" : "0");
+        }
+        return text.append(fraction);
+    }
+}
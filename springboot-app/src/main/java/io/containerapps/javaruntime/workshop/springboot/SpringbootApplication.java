@@ -1,9 +1,12 @@
 package io.containerapps.javaruntime.workshop.springboot;
 
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
+// Statistics are serialized with the ObjectMapper by the cache, the stream and the batch load, which AOT can't detect for a native image
+@RegisterReflectionForBinding(Statistics.class)
 public class SpringbootApplication {
 
 	public static void main(String[] args) {
@@ -1,20 +1,40 @@
 // tag::adocHeader[]
 package io.containerapps.javaruntime.workshop.springboot;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.System.Logger;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
-import static java.lang.System.Logger.Level.INFO;
 import static java.lang.invoke.MethodHandles.lookup;
 
 @RestController
@@ -22,11 +42,50 @@ import static java.lang.invoke.MethodHandles.lookup;
 public class SpringbootResource {
 
     private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int MAX_PAGE_SIZE = 10000;
+    private static final Set<String> BUCKETS = Set.of("minute", "hour", "day");
+    private static final String CPU_DONE = "Spring Boot: CPU consumption is done with ";
+    private static final String MEMORY_DONE = "Spring Boot: Memory consumption is done with ";
+    private static final String WORKLOAD_DONE = "Spring Boot: Workload ";
+    private static final int MAX_WORKLOAD_SIZE = 10000;
+    private static final String PERSISTED = " The result is persisted in the database.";
+    private static final String QUEUED = " The result is queued to be persisted in the database.";
+    private static final RequestLog.Format HELLO_LOG = RequestLog.Format.of("hello", "Spring Boot: hello");
+    private static final RequestLog.Format CPU_LOG = RequestLog.Format.of("cpu", "Spring Boot: cpu: {iterations} {db} with desc {desc} using {kernel} over {parallelism}");
+    private static final RequestLog.Format MEMORY_LOG = RequestLog.Format.of("memory", "Spring Boot: memory: {bites} {db} with desc {desc} using {strategy}");
+    private static final RequestLog.Format WORKLOAD_LOG = RequestLog.Format.of("workload", "Spring Boot: workload: {name} {size} {db} with desc {desc}");
+    private static final RequestLog.Format STATS_LOG = RequestLog.Format.of("stats", "Spring Boot: retrieving statistics after {after} limited to {limit}");
+    private static final RequestLog.Format SUMMARY_LOG = RequestLog.Format.of("summary", "Spring Boot: summarizing statistics by {bucket}");
+    private static final RequestLog.Format STREAM_LOG = RequestLog.Format.of("stream", "Spring Boot: streaming statistics after {after} as {format}");
+    private static final RequestLog.Format BATCH_LOG = RequestLog.Format.of("batch", "Spring Boot: loading statistics as {format}");
 
     private final StatisticsRepository repository;
+    private final StatisticsWriter writer;
+    private final StatisticsCache cache;
+    private final StatisticsStore store;
+    private final StatisticsLoader loader;
+    private final ObjectMapper objectMapper;
+    private final WorkloadMetrics metrics;
+    private final TimingHistograms histograms;
+    private final ConcurrencyLimiter limiter;
+    private final RequestLog requestLog;
+    private final WorkloadRegistry workloads;
 
-    public SpringbootResource(StatisticsRepository statisticsRepository) {
+    public SpringbootResource(StatisticsRepository statisticsRepository, StatisticsWriter statisticsWriter, StatisticsCache statisticsCache, StatisticsStore statisticsStore,
+                              StatisticsLoader statisticsLoader, ObjectMapper objectMapper, WorkloadMetrics workloadMetrics, TimingHistograms timingHistograms,
+                              ConcurrencyLimiter concurrencyLimiter, RequestLog requestLog, WorkloadRegistry workloadRegistry) {
         this.repository = statisticsRepository;
+        this.writer = statisticsWriter;
+        this.cache = statisticsCache;
+        this.store = statisticsStore;
+        this.loader = statisticsLoader;
+        this.objectMapper = objectMapper;
+        this.metrics = workloadMetrics;
+        this.histograms = timingHistograms;
+        this.limiter = concurrencyLimiter;
+        this.requestLog = requestLog;
+        this.workloads = workloadRegistry;
     }
 // end::adocHeader[]
 
@@ -39,8 +98,10 @@ public class SpringbootResource {
 // tag::adocMethodHello[]
     @GetMapping(produces = MediaType.TEXT_PLAIN_VALUE)
     public String hello() {
-        LOGGER.log(INFO, "Spring Boot: hello");
-        return "Spring Boot: hello";
+        if (requestLog.sample(LOGGER, "hello")) {
+            requestLog.log(LOGGER, HELLO_LOG);
+        }
+        return metrics.record("hello", false, WorkloadMetrics.NO_SIZE, () -> "Spring Boot: hello");
     }
 // end::adocMethodHello[]
 
@@ -50,48 +111,67 @@ public class SpringbootResource {
      * {@code curl 'localhost:8703/springboot/cpu?iterations=10'}
      * {@code curl 'localhost:8703/springboot/cpu?iterations=10&db=true'}
      * {@code curl 'localhost:8703/springboot/cpu?iterations=10&db=true&desc=java17'}
+     * {@code curl 'localhost:8703/springboot/cpu?iterations=10000&kernel=hash&parallelism=4'}
      *
-     * @param iterations the number of iterations to run (times 20,000).
+     * @param iterations  the number of iterations to run (times 20,000).
+     * @param kernel      what each iteration does: sleep (every 20,000 iterations), hash or sum.
+     * @param parallelism the number of slices the iterations are split in, forked in the common ForkJoinPool.
      * @return the result
      */
 // tag::adocMethodCPU[]
     @GetMapping(path = "/cpu", produces = MediaType.TEXT_PLAIN_VALUE)
-    public String cpu(@RequestParam(value = "iterations", defaultValue = "10") Long iterations,
+    public ResponseEntity<String> cpu(@RequestParam(value = "iterations", defaultValue = "10") Long iterations,
                       @RequestParam(value = "db", defaultValue = "false") Boolean db,
-                      @RequestParam(value = "desc", required = false) String desc) {
-        LOGGER.log(INFO, "Spring Boot: cpu: {0} {1} with desc {2}", iterations, db, desc);
+                      @RequestParam(value = "desc", required = false) String desc,
+                      @RequestParam(value = "kernel", defaultValue = "sleep") String kernel,
+                      @RequestParam(value = "parallelism", defaultValue = "1") Integer parallelism) {
+        if (requestLog.sample(LOGGER, "cpu")) {
+            requestLog.log(LOGGER, CPU_LOG, iterations, db, desc, kernel, parallelism);
+        }
+        CpuWorkload.Kernel cpuKernel;
+        try {
+            cpuKernel = CpuWorkload.Kernel.of(kernel);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "kernel must be one of " + Arrays.toString(CpuWorkload.Kernel.values()));
+        }
+        if (parallelism < 1 || parallelism > CpuWorkload.MAX_PARALLELISM) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "parallelism must be between 1 and " + CpuWorkload.MAX_PARALLELISM);
+        }
+        return limiter.limit(() -> metrics.record("cpu", db, iterations, () -> cpuWorkload(iterations, db, desc, cpuKernel, parallelism)), this::overloaded);
+    }
+
+    private ResponseEntity<String> cpuWorkload(Long iterations, Boolean db, String desc, CpuWorkload.Kernel kernel, int parallelism) {
         Long iterationsDone = iterations;
+        boolean sequential = kernel == CpuWorkload.Kernel.SLEEP && parallelism == 1;
+        String kernelName = kernel.name().toLowerCase(Locale.ROOT);
 
-        Instant start = Instant.now();
+        RequestTimings timings = RequestTimings.start();
         if (iterations == null) {
             iterations = 20000L;
         } else {
             iterations *= 20000;
         }
-        while (iterations > 0) {
-            if (iterations % 20000 == 0) {
-                try {
-                    Thread.sleep(20);
-                } catch (InterruptedException ie) {
-                }
-            }
-            iterations--;
-        }
+        CpuWorkload.burn(iterations, kernel, parallelism);
+        long computeNanos = timings.end("compute");
 
+        StatisticsWriter.Outcome outcome = StatisticsWriter.Outcome.NONE;
         if (db) {
             Statistics statistics = new Statistics();
             statistics.type = Type.CPU;
-            statistics.parameter = iterations.toString();
-            statistics.duration = Duration.between(start, Instant.now());
+            statistics.parameter = sequential ? iterationsDone.toString() : iterationsDone + ":" + kernelName + ":" + parallelism;
+            statistics.duration = Duration.ofNanos(computeNanos);
             statistics.description = desc;
-            repository.save(statistics);
+            outcome = writer.write(statistics);
+            timings.end(outcome.phase());
         }
 
-        String msg = "Spring Boot: CPU consumption is done with " + iterationsDone + " iterations in " + Duration.between(start, Instant.now()).getNano() + " nano-seconds.";
-        if (db) {
-            msg += " The result is persisted in the database.";
+        StringBuilder msg = new StringBuilder(192).append(CPU_DONE).append(iterationsDone).append(" iterations ");
+        if (!sequential) {
+            msg.append("using ").append(kernelName).append(" over ").append(parallelism).append(" slices ");
         }
-        return msg;
+        timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+        appendOutcome(msg, outcome);
+        return timed("cpu", msg, timings);
     }
 // end::adocMethodCPU[]
 
@@ -101,62 +181,290 @@ public class SpringbootResource {
      * {@code curl 'localhost:8703/springboot/memory?bites=10'}
      * {@code curl 'localhost:8703/springboot/memory?bites=10&db=true'}
      * {@code curl 'localhost:8703/springboot/memory?bites=10&db=true&desc=java17'}
+     * {@code curl 'localhost:8703/springboot/memory?bites=10&strategy=direct'}
      *
-     * @param bites the number of megabytes to eat
+     * @param bites    the number of megabytes to eat
+     * @param strategy how to eat them: hashmap, array, direct or mapped.
      * @return the result.
      */
 // tag::adocMethodMemory[]
     @GetMapping(path = "/memory", produces = MediaType.TEXT_PLAIN_VALUE)
-    public String memory(@RequestParam(value = "bites", defaultValue = "10") Integer bites,
+    public ResponseEntity<String> memory(@RequestParam(value = "bites", defaultValue = "10") Integer bites,
                          @RequestParam(value = "db", defaultValue = "false") Boolean db,
-                         @RequestParam(value = "desc", required = false) String desc) {
-        LOGGER.log(INFO, "Spring Boot: memory: {0} {1} with desc {2}", bites, db, desc);
+                         @RequestParam(value = "desc", required = false) String desc,
+                         @RequestParam(value = "strategy", defaultValue = "hashmap") String strategy) {
+        if (requestLog.sample(LOGGER, "memory")) {
+            requestLog.log(LOGGER, MEMORY_LOG, bites, db, desc, strategy);
+        }
+        MemoryStrategy memoryStrategy;
+        try {
+            memoryStrategy = MemoryStrategy.of(strategy);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "strategy must be one of " + Arrays.toString(MemoryStrategy.values()));
+        }
+        return limiter.limit(() -> metrics.record("memory", db, bites, () -> memoryWorkload(bites, db, desc, memoryStrategy)), this::overloaded);
+    }
 
-        Instant start = Instant.now();
+    private ResponseEntity<String> memoryWorkload(Integer bites, Boolean db, String desc, MemoryStrategy strategy) {
+        RequestTimings timings = RequestTimings.start();
         if (bites == null) {
             bites = 1;
         }
-        HashMap hunger = new HashMap<>();
-        for (int i = 0; i < bites * 1024 * 1024; i += 8192) {
-            byte[] bytes = new byte[8192];
-            hunger.put(i, bytes);
-            for (int j = 0; j < 8192; j++) {
-                bytes[j] = '0';
-            }
-        }
+        AllocationMeter meter = AllocationMeter.start();
+        strategy.eat(bites);
+        long allocationNanos = timings.end("allocation");
+        long allocatedBytes = meter.allocatedBytes();
+        long gcCount = meter.gcCount();
+        long gcMillis = meter.gcMillis();
 
+        StatisticsWriter.Outcome outcome = StatisticsWriter.Outcome.NONE;
         if (db) {
             Statistics statistics = new Statistics();
             statistics.type = Type.MEMORY;
-            statistics.parameter = bites.toString();
-            statistics.duration = Duration.between(start, Instant.now());
+            statistics.parameter = strategy == MemoryStrategy.HASHMAP ? bites.toString() : bites + ":" + strategy.name().toLowerCase(Locale.ROOT);
+            statistics.duration = Duration.ofNanos(allocationNanos);
             statistics.description = desc;
-            repository.save(statistics);
+            outcome = writer.write(statistics);
+            timings.end(outcome.phase());
+        }
+
+        StringBuilder msg = new StringBuilder(256).append(MEMORY_DONE).append(bites).append(" bites using ").append(strategy.name().toLowerCase(Locale.ROOT))
+            .append(" (").append(allocatedBytes).append(" bytes allocated on the heap, ").append(gcCount).append(" GCs for ").append(gcMillis).append(" ms) ");
+        timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+        appendOutcome(msg, outcome);
+        return timed("memory", msg, timings);
+    }
+// end::adocMethodMemory[]
+
+    /**
+     * Runs a workload shaped like a hot path of a real service: json, regex, sort, hash, gzip or file.
+     * {@code curl 'localhost:8703/springboot/workload/json'}
+     * {@code curl 'localhost:8703/springboot/workload/regex?size=100'}
+     * {@code curl 'localhost:8703/springboot/workload/gzip?size=10&db=true&desc=java17'}
+     *
+     * @param name the name of the workload.
+     * @param size the number of units of work to run, see {@link Workloads} and {@link JsonWorkload}.
+     * @return the result.
+     */
+    @GetMapping(path = "/workload/{name}", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> workload(@PathVariable("name") String name,
+                           @RequestParam(value = "size", defaultValue = "10") Integer size,
+                           @RequestParam(value = "db", defaultValue = "false") Boolean db,
+                           @RequestParam(value = "desc", required = false) String desc) {
+        if (requestLog.sample(LOGGER, "workload")) {
+            requestLog.log(LOGGER, WORKLOAD_LOG, name, size, db, desc);
         }
+        Workload workload = workloads.find(name)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "workload must be one of " + workloads.names()));
+        if (size < 0 || size > MAX_WORKLOAD_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 0 and " + MAX_WORKLOAD_SIZE);
+        }
+        // Timed per workload, as workload/json, workload/regex...
+        String endpoint = "workload/" + workload.name().toLowerCase(Locale.ROOT);
+        return limiter.limit(() -> metrics.record(endpoint, db, size, () -> runWorkload(endpoint, workload, size, db, desc)), this::overloaded);
+    }
 
-        String msg = "Spring Boot: Memory consumption is done with " + bites + " bites in " + Duration.between(start, Instant.now()).getNano() + " nano-seconds.";
+    private ResponseEntity<String> runWorkload(String endpoint, Workload workload, int size, Boolean db, String desc) {
+        RequestTimings timings = RequestTimings.start();
+        long checksum = workload.run(size);
+        long computeNanos = timings.end("compute");
+
+        StatisticsWriter.Outcome outcome = StatisticsWriter.Outcome.NONE;
         if (db) {
-            msg += " The result is persisted in the database.";
+            Statistics statistics = new Statistics();
+            statistics.type = workload.type();
+            statistics.parameter = Integer.toString(size);
+            statistics.duration = Duration.ofNanos(computeNanos);
+            statistics.description = desc;
+            outcome = writer.write(statistics);
+            timings.end(outcome.phase());
         }
-        return msg;
+
+        StringBuilder msg = new StringBuilder(192).append(WORKLOAD_DONE).append(workload.name().toLowerCase(Locale.ROOT))
+            .append(" is done with ").append(size).append(" units (checksum ").append(checksum).append(") ");
+        timings.describe(msg).append(" in ").append(timings.stop()).append(" nano-seconds.");
+        appendOutcome(msg, outcome);
+        return timed(endpoint, msg, timings);
+    }
+
+    private ResponseEntity<String> timed(String endpoint, CharSequence msg, RequestTimings timings) {
+        histograms.record(endpoint, timings);
+        return ResponseEntity.ok().header(RequestTimings.SERVER_TIMING, timings.serverTiming()).body(msg.toString());
+    }
+
+    private ResponseEntity<String> overloaded(long retryAfter) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter))
+            .body("Spring Boot: too many requests in progress, retry in " + retryAfter + " seconds.");
     }
-// end::adocMethodMemory[]
 
     /**
-     * Returns what's in the database.
+     * Tells whether the statistics of the request are in the database, or only queued for it in write-behind mode.
+     */
+    private static void appendOutcome(StringBuilder msg, StatisticsWriter.Outcome outcome) {
+        if (outcome == StatisticsWriter.Outcome.PERSISTED) {
+            msg.append(PERSISTED);
+        } else if (outcome == StatisticsWriter.Outcome.QUEUED) {
+            msg.append(QUEUED);
+        }
+    }
+
+    /**
+     * Returns what's in the database, one page at a time.
+     * The page is served from the cache until a Statistics is persisted, and a poll with the ETag of the
+     * previous response gets a 304 without touching the database. With {@code statistics.store.enabled}, the page is
+     * read from the rows of the local store, within their retention.
      * {@code curl 'localhost:8703/springboot/stats'}
+     * {@code curl 'localhost:8703/springboot/stats?after=1000&limit=100'}
+     * {@code curl -i -H 'If-None-Match: "<etag>"' 'localhost:8703/springboot/stats'}
      *
+     * @param after the id of the last Statistics of the previous page.
+     * @param limit the maximum number of Statistics to return.
      * @return the list of Statistics.
      */
 // tag::adocMethodStats[]
     @GetMapping(path = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<Statistics> stats() {
-        LOGGER.log(INFO, "Spring Boot: retrieving statistics");
-        List<Statistics> result = new ArrayList<Statistics>();
-        for (Statistics stats : repository.findAll()) {
-            result.add(stats);
+    public ResponseEntity<byte[]> stats(@RequestParam(value = "after", defaultValue = "0") Long after,
+                                        @RequestParam(value = "limit", defaultValue = "1000") Integer limit,
+                                        WebRequest request, HttpServletResponse servletResponse) {
+        if (requestLog.sample(LOGGER, "stats")) {
+            requestLog.log(LOGGER, STATS_LOG, after, limit);
         }
-        return result;
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return metrics.record("stats", true, size, () -> {
+            RequestTimings timings = RequestTimings.start();
+            ResponseEntity<byte[]> response = null;
+            if (!request.checkNotModified(cache.etag())) {
+                StatisticsCache.Page page = cache.page(after, size, () -> {
+                    List<Statistics> statistics = store.enabled()
+                        ? store.page(after, size)
+                        : repository.findByIdGreaterThanOrderById(after, PageRequest.of(0, size));
+                    timings.end("query");
+                    try {
+                        return objectMapper.writeValueAsBytes(statistics);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        timings.end("serialize");
+                    }
+                });
+                // The ETag of the page, older than the current one when its load was shared: Spring answers a 304
+                // when it is the one of the request
+                response = ResponseEntity.ok().eTag(page.etag()).body(page.body());
+            }
+            histograms.record("stats", timings);
+            servletResponse.setHeader(RequestTimings.SERVER_TIMING, timings.serverTiming());
+            return response;
+        });
     }
 // end::adocMethodStats[]
+
+    /**
+     * Returns count, mean, percentiles and max of the durations, in milliseconds, computed by the database, or with
+     * {@code statistics.store.enabled} from the 1-minute and 1-hour aggregates of the local store.
+     * {@code curl 'localhost:8703/springboot/stats/summary'}
+     * {@code curl 'localhost:8703/springboot/stats/summary?bucket=minute'}
+     *
+     * @param bucket the time bucket of done_at to group by: minute, hour or day.
+     * @return the summary per type, parameter, description and time bucket.
+     */
+    @GetMapping(path = "/stats/summary", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<StatisticsSummary> summary(@RequestParam(value = "bucket", defaultValue = "hour") String bucket) {
+        if (requestLog.sample(LOGGER, "summary")) {
+            requestLog.log(LOGGER, SUMMARY_LOG, bucket);
+        }
+        if (!BUCKETS.contains(bucket)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "bucket must be one of " + BUCKETS);
+        }
+        return store.enabled() ? store.summary(bucket) : repository.summary(bucket);
+    }
+
+    /**
+     * Streams what's in the database, as NDJSON or as a JSON array, without loading it in memory.
+     * {@code curl 'localhost:8703/springboot/stats/stream'}
+     * {@code curl 'localhost:8703/springboot/stats/stream?after=1000&format=json'}
+     *
+     * @param after  the id after which to start streaming.
+     * @param format either ndjson or json.
+     * @return the stream of Statistics.
+     */
+    @GetMapping(path = "/stats/stream", produces = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamStats(@RequestParam(value = "after", defaultValue = "0") Long after,
+                                                             @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        if (requestLog.sample(LOGGER, "stream")) {
+            requestLog.log(LOGGER, STREAM_LOG, after, format);
+        }
+        boolean array = "json".equals(format);
+        StreamingResponseBody body = output -> {
+            Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            out.write(array ? "[" : "");
+            try {
+                boolean[] first = {true};
+                repository.forEachAfter(after, statistics -> {
+                    try {
+                        if (array && !first[0]) {
+                            out.write(',');
+                        }
+                        out.write(objectMapper.writeValueAsString(statistics));
+                        out.write(array ? "" : "\n");
+                        first[0] = false;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.write(array ? "]" : "");
+            out.flush();
+        };
+        return ResponseEntity.ok()
+            .contentType(array ? MediaType.APPLICATION_JSON : APPLICATION_NDJSON)
+            .body(body);
+    }
+
+    /**
+     * Inserts statistics sent as NDJSON or as a JSON array, for example the output of /stats/stream, in chunks of
+     * {@code statistics.batch.chunk-size} rows, each in its own transaction.
+     * {@code curl -X POST -H 'Content-Type: application/x-ndjson' --data-binary @stats.ndjson 'localhost:8703/springboot/stats/batch'}
+     * {@code curl -X POST -H 'Content-Type: application/json' --data-binary @stats.json 'localhost:8703/springboot/stats/batch'}
+     *
+     * @param contentType the format of the body.
+     * @param body        the statistics, read as they are inserted.
+     * @return the number of statistics inserted, or the invalid statistics and how many were inserted before it.
+     */
+    @PostMapping(path = "/stats/batch", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> loadStats(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) throws IOException {
+        boolean array = MediaType.APPLICATION_JSON.isCompatibleWith(contentType);
+        if (requestLog.sample(LOGGER, "batch")) {
+            requestLog.log(LOGGER, BATCH_LOG, array ? "json" : "ndjson");
+        }
+        try {
+            return ResponseEntity.ok(loader.load(body, array));
+        } catch (IllegalArgumentException e) {
+            // Unlike the reason of a ResponseStatusException, the detail is sent
+            return ResponseEntity.badRequest().body(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the percentiles, in milliseconds, of the phases of the cpu, memory and stats requests since the start.
+     * {@code curl 'localhost:8703/springboot/timings'}
+     *
+     * @return the percentiles and histogram of each phase of each endpoint.
+     */
+    @GetMapping(path = "/timings", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Map<String, TimingHistograms.Summary>> timings() {
+        return histograms.snapshot();
+    }
+
+    /**
+     * Returns the queue depth and flush latency of the statistics writer.
+     * {@code curl 'localhost:8703/springboot/stats/writer'}
+     *
+     * @return the writer metrics.
+     */
+    @GetMapping(path = "/stats/writer", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StatisticsWriter.Metrics writerMetrics() {
+        return writer.metrics();
+    }
 }
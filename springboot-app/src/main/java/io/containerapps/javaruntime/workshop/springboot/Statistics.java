@@ -5,6 +5,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -21,12 +23,22 @@ public class Statistics {
     public Framework framework = Framework.SPRINGBOOT;
     public Type type;
     public String parameter;
+    @JdbcTypeCode(SqlTypes.BIGINT)
     public Duration duration;
     public String description;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
 }
 
+// Persisted by ordinal: new types go at the end
 enum Type {
-    CPU, MEMORY
+    CPU, MEMORY, JSON, REGEX, SORT, HASH, GZIP, FILE
 }
 
 enum Framework {
@@ -0,0 +1,17 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+interface StatisticsQueries {
+
+    /**
+     * Reads the statistics with an id greater than {@code after} through a server-side cursor.
+     */
+    void forEachAfter(long after, Consumer<Statistics> action);
+
+    /**
+     * Aggregates the durations in SQL, grouped by type, parameter, description and {@code bucket} of done_at.
+     */
+    List<StatisticsSummary> summary(String bucket);
+}
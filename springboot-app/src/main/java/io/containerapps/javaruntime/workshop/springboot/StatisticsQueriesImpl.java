@@ -0,0 +1,45 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+class StatisticsQueriesImpl implements StatisticsQueries {
+
+    private static final int FETCH_SIZE = 500;
+    private static final String SUMMARY_QUERY = StatisticsSummary.query("Statistics_Springboot");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachAfter(long after, Consumer<Statistics> action) {
+        try (Stream<Statistics> rows = entityManager
+            .createQuery("select s from Statistics s where s.id > :after order by s.id", Statistics.class)
+            .setParameter("after", after)
+            .setHint(HINT_FETCH_SIZE, FETCH_SIZE)
+            .getResultStream()) {
+            rows.forEach(statistics -> {
+                action.accept(statistics);
+                entityManager.detach(statistics);
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<StatisticsSummary> summary(String bucket) {
+        List<Object[]> rows = entityManager.createNativeQuery(SUMMARY_QUERY)
+            .setParameter("bucket", bucket)
+            .getResultList();
+        return rows.stream().map(StatisticsSummary::of).toList();
+    }
+}
@@ -1,6 +1,11 @@
 package io.containerapps.javaruntime.workshop.springboot;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.CrudRepository;
 
-interface StatisticsRepository extends CrudRepository<Statistics, Long> {
+import java.util.List;
+
+interface StatisticsRepository extends CrudRepository<Statistics, Long>, StatisticsQueries {
+
+    List<Statistics> findByIdGreaterThanOrderById(Long after, Pageable pageable);
 }
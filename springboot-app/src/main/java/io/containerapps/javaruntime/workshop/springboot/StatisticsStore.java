@@ -0,0 +1,829 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Keeps a copy of the persisted {@link Statistics} in append-only columnar segments on the local disk, so that
+ * {@code /stats} and {@code /stats/summary} don't query the database, and months of history are summarized without
+ * scanning every row.
+ * The rows are appended to one segment per hour of done_at, a file per column, by a background thread, and read through
+ * memory-mapped buffers. Once its hour is over, a segment is rolled up into 1-minute and 1-hour aggregates: count, sum,
+ * min, max and an HdrHistogram of the durations, and so are the rows loaded later into a past hour, the aggregates of the
+ * same minute or hour being added up when read. The raw rows, the minutes and the hours each have their own retention.
+ * Only what the app persists while the store is enabled is kept.
+ */
+@Component
+public class StatisticsStore {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+    private static final String FRAMEWORK = "springboot";
+    private static final int BATCH_SIZE = 1000;
+    // A batch load can spread over many hours, each a raw segment with 4 open files
+    private static final int MAX_OPEN_SEGMENTS = 16;
+    private static final int SIGNIFICANT_DIGITS = 3;
+    // Keeps the histograms of long durations small, a few KB decoded
+    private static final long LOWEST_NANOS = 1_000;
+    // Write-behind can persist a Statistics this long after it is done, its hour is rolled up after that
+    private static final long GRACE_SECONDS = 60;
+
+    private static final String ID = "id.col";
+    private static final String DONE_AT = "done_at.col";
+    private static final String SERIES = "series.col";
+    private static final String DURATION = "duration.col";
+    private static final String BUCKET = "bucket.col";
+    private static final String COUNT = "count.col";
+    private static final String SUM = "sum.col";
+    private static final String MIN = "min.col";
+    private static final String MAX = "max.col";
+    // End offset of each histogram in HISTOGRAMS
+    private static final String HISTOGRAM_END = "histogram_end.col";
+    private static final String HISTOGRAMS = "histograms.bin";
+    // Number of rows of a raw segment already rolled up
+    private static final String ROLLED_UP = "rolled_up";
+    private static final String[] RAW_COLUMNS = {ID, DONE_AT, SERIES, DURATION};
+    private static final String[] ROLLUP_COLUMNS = {BUCKET, SERIES, COUNT, SUM, MIN, MAX, HISTOGRAM_END};
+
+    private static final Comparator<StatisticsSummary> SUMMARY_ORDER = Comparator.comparing(StatisticsSummary::bucket)
+        .thenComparing(StatisticsSummary::type, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(StatisticsSummary::parameter, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(StatisticsSummary::description, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * The raw rows in segments of an hour, their aggregates per minute in segments of a day, and per hour in segments
+     * of 30 days.
+     */
+    private enum Tier {
+        RAW(3_600), MINUTE(86_400), HOUR(30 * 86_400);
+
+        private final long span;
+
+        Tier(long span) {
+            this.span = span;
+        }
+    }
+
+    private final StatisticsCache cache;
+    private final boolean enabled;
+    private final Path directory;
+    private final Map<Tier, Duration> retention = new HashMap<>();
+    private final BlockingQueue<Statistics> queue;
+    private final Thread drainer;
+    private volatile boolean running = true;
+    private final AtomicLong dropped = new AtomicLong();
+    // Taken to read, and by the drainer to roll up and delete segments, never to append rows
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Read by the requests, appended by the drainer thread
+    private volatile Series[] series = new Series[0];
+    // Rows of each raw segment in the aggregates, by the start of its hour
+    private final Map<Long, Integer> rolledUp = new ConcurrentHashMap<>();
+    // Lowest and highest id of each raw segment, by the start of its hour
+    private final Map<Long, IdRange> idRanges = new ConcurrentHashMap<>();
+    // Only used by the drainer thread
+    private final Map<Series, Integer> seriesIds = new HashMap<>();
+    private final Map<Long, Columns> open = new HashMap<>();
+    // The raw segments with rows to roll up
+    private final TreeSet<Long> pending = new TreeSet<>();
+    private long expiredAt;
+    private DataOutputStream seriesOut;
+
+    public StatisticsStore(MeterRegistry registry, StatisticsCache cache,
+                           @Value("${statistics.store.enabled:false}") boolean enabled,
+                           @Value("${statistics.store.directory:statistics-store/springboot}") String directory,
+                           @Value("${statistics.store.queue-capacity:10000}") int queueCapacity,
+                           @Value("${statistics.store.retention.raw:2d}") Duration rawRetention,
+                           @Value("${statistics.store.retention.minute:30d}") Duration minuteRetention,
+                           @Value("${statistics.store.retention.hour:365d}") Duration hourRetention) {
+        this.cache = cache;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.retention.put(Tier.RAW, rawRetention);
+        this.retention.put(Tier.MINUTE, minuteRetention);
+        this.retention.put(Tier.HOUR, hourRetention);
+        this.queue = new ArrayBlockingQueue<>(enabled ? queueCapacity : 1);
+        if (enabled) {
+            LOGGER.log(INFO, "Spring Boot: storing the statistics in {0}, keeping the rows {1}, the minutes {2} and the hours {3}",
+                this.directory.toAbsolutePath(), rawRetention, minuteRetention, hourRetention);
+            try {
+                open();
+                // Rolls up the hours that ended while the app was stopped, and deletes what expired meanwhile
+                rollUp();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open the statistics store in " + directory, e);
+            }
+            drainer = new Thread(this::drain, "statistics-store");
+            drainer.setDaemon(true);
+            drainer.start();
+        } else {
+            drainer = null;
+        }
+        Gauge.builder("statistics.store.queued", queue, BlockingQueue::size)
+            .description("Statistics waiting to be appended to the store")
+            .tag("framework", FRAMEWORK)
+            .register(registry);
+        FunctionCounter.builder("statistics.store.dropped", dropped, AtomicLong::get)
+            .description("Statistics not stored because the queue was full or they had no duration")
+            .tag("framework", FRAMEWORK)
+            .register(registry);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a persisted Statistics, with its id, to be appended to the store.
+     */
+    public void append(Statistics statistics) {
+        if (!enabled) {
+            return;
+        }
+        if (!running || statistics.duration == null || statistics.doneAt == null || !queue.offer(statistics)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the stored Statistics with an id above {@code after}, by id, the ones older than the raw retention are gone.
+     */
+    public List<Statistics> page(long after, int limit) {
+        // The rows with the highest ids at the head, to be replaced by lower ones
+        PriorityQueue<Row> rows = new PriorityQueue<>(limit, Comparator.comparingLong(Row::id).reversed());
+        lock.readLock().lock();
+        try {
+            // A batch load appends new ids to past hours, so the segments are read by their lowest id rather than by
+            // hour, from the first one with ids above after, until the next one starts above the last id of the page
+            List<Map.Entry<Long, IdRange>> segments = idRanges.entrySet().stream()
+                .filter(segment -> segment.getValue().max() > after)
+                .sorted(Comparator.comparingLong(segment -> segment.getValue().min()))
+                .toList();
+            for (Map.Entry<Long, IdRange> segment : segments) {
+                if (rows.size() == limit && segment.getValue().min() > rows.peek().id()) {
+                    break;
+                }
+                Raw raw = Raw.map(tier(Tier.RAW).resolve(Long.toString(segment.getKey())));
+                for (int row = 0; row < raw.rows(); row++) {
+                    long id = raw.ids().get(row);
+                    if (id > after && (rows.size() < limit || id < rows.peek().id())) {
+                        if (rows.size() == limit) {
+                            rows.poll();
+                        }
+                        rows.add(new Row(id, raw, row));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Series[] known = series;
+        List<Statistics> page = new ArrayList<>(rows.size());
+        while (!rows.isEmpty()) {
+            page.add(rows.poll().statistics(known));
+        }
+        Collections.reverse(page);
+        return page;
+    }
+
+    /**
+     * Summarizes the stored Statistics like the summary query of the database, the percentiles being the ones of the
+     * HdrHistograms, exact to 0.1% above a microsecond. The minutes are read from the 1-minute aggregates, the hours and days from the 1-hour
+     * ones, and the rows not rolled up yet from the raw segments.
+     *
+     * @param bucket minute, hour or day.
+     */
+    public List<StatisticsSummary> summary(String bucket) {
+        long width = "minute".equals(bucket) ? 60 : "hour".equals(bucket) ? 3_600 : 86_400;
+        List<StatisticsSummary> summaries = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Key, Aggregate> recent = new HashMap<>();
+            for (Path segment : segments(Tier.RAW)) {
+                Raw raw = Raw.map(segment);
+                for (int row = rolledUp.getOrDefault(start(segment), 0); row < raw.rows(); row++) {
+                    Key key = new Key(floor(Math.floorDiv(raw.doneAt().get(row), 1_000_000), width), raw.series().get(row));
+                    recent.computeIfAbsent(key, k -> new Aggregate()).add(raw.durations().get(row));
+                }
+            }
+            // A bucket never spans two segments, so the histograms of a segment are dropped once it is summarized
+            for (Path segment : segments(width == 60 ? Tier.MINUTE : Tier.HOUR)) {
+                Rollup rollup = Rollup.map(segment);
+                Map<Key, Aggregate> aggregates = new HashMap<>();
+                for (int row = 0; row < rollup.rows(); row++) {
+                    aggregates.merge(new Key(floor(rollup.buckets().get(row), width), rollup.series().get(row)),
+                        rollup.aggregate(row), Aggregate::add);
+                }
+                aggregates.forEach((key, aggregate) -> {
+                    Aggregate rows = recent.remove(key);
+                    summaries.add((rows == null ? aggregate : aggregate.add(rows)).summary(series[key.series()], key.bucket()));
+                });
+            }
+            recent.forEach((key, aggregate) -> summaries.add(aggregate.summary(series[key.series()], key.bucket())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        summaries.sort(SUMMARY_ORDER);
+        return summaries;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (drainer == null) {
+            return;
+        }
+        running = false;
+        try {
+            drainer.join(5000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (drainer.isAlive()) {
+            // Only the drainer writes the segments, it appends the rest of the queue and flushes each batch itself
+            LOGGER.log(WARNING, "Spring Boot: the statistics store is still appending {0} statistics, leaving it to finish", queue.size());
+            return;
+        }
+        List<Statistics> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        try {
+            append(remaining);
+            closeSegments();
+            seriesOut.close();
+        } catch (IOException e) {
+            LOGGER.log(WARNING, "Spring Boot: could not close the statistics store in " + directory, e);
+        }
+    }
+
+    private void open() throws IOException {
+        for (Tier tier : Tier.values()) {
+            Files.createDirectories(tier(tier));
+        }
+        Path seriesFile = directory.resolve("series.dat");
+        if (Files.exists(seriesFile)) {
+            byte[] bytes = Files.readAllBytes(seriesFile);
+            ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+            DataInputStream in = new DataInputStream(input);
+            List<Series> loaded = new ArrayList<>();
+            int complete = 0;
+            try {
+                while (input.available() > 0) {
+                    int type = in.readByte();
+                    String parameter = in.readBoolean() ? in.readUTF() : null;
+                    String description = in.readBoolean() ? in.readUTF() : null;
+                    loaded.add(new Series(type < 0 ? null : Type.values()[type], parameter, description));
+                    complete = bytes.length - input.available();
+                }
+            } catch (IOException torn) {
+                // The last series was not written completely, no row refers to it
+            }
+            try (FileChannel channel = FileChannel.open(seriesFile, WRITE)) {
+                channel.truncate(complete);
+            }
+            for (Series known : loaded) {
+                seriesIds.put(known, seriesIds.size());
+            }
+            series = loaded.toArray(new Series[0]);
+        }
+        seriesOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(seriesFile, CREATE, WRITE, APPEND))));
+        for (Path segment : segments(Tier.RAW)) {
+            Path rolledUpFile = segment.resolve(ROLLED_UP);
+            int rows = Files.exists(rolledUpFile) ? Integer.parseInt(Files.readString(rolledUpFile).trim()) : 0;
+            rolledUp.put(start(segment), rows);
+            Raw raw = Raw.map(segment);
+            if (raw.rows() > rows) {
+                pending.add(start(segment));
+            }
+            if (raw.rows() > 0) {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int row = 0; row < raw.rows(); row++) {
+                    min = Math.min(min, raw.ids().get(row));
+                    max = Math.max(max, raw.ids().get(row));
+                }
+                idRanges.put(start(segment), new IdRange(min, max));
+            }
+        }
+    }
+
+    private void drain() {
+        List<Statistics> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Statistics first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    append(batch);
+                }
+                rollUp();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                dropped.addAndGet(batch.size());
+                batch.clear();
+                // Reopened from their last complete row
+                for (Columns columns : open.values()) {
+                    columns.discard();
+                }
+                open.clear();
+                LOGGER.log(WARNING, "Spring Boot: could not write the statistics store in " + directory, e);
+            }
+        }
+    }
+
+    private void append(List<Statistics> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (Statistics statistics : batch) {
+            long micros = statistics.doneAt.getEpochSecond() * 1_000_000 + statistics.doneAt.getNano() / 1_000;
+            long start = floor(statistics.doneAt.getEpochSecond(), Tier.RAW.span);
+            long id = statistics.getId();
+            int seriesId = seriesId(new Series(statistics.type, statistics.parameter, statistics.description));
+            Columns columns = open.get(start);
+            if (columns == null) {
+                if (open.size() == MAX_OPEN_SEGMENTS) {
+                    closeSegments();
+                }
+                columns = new Columns(tier(Tier.RAW).resolve(Long.toString(start)), RAW_COLUMNS);
+                open.put(start, columns);
+                pending.add(start);
+            }
+            // Before the row is written, so a page never skips a segment holding it
+            idRanges.merge(start, new IdRange(id), IdRange::add);
+            columns.putLong(0, id);
+            columns.putLong(1, micros);
+            columns.putInt(2, seriesId);
+            columns.putLong(3, statistics.duration.toNanos());
+        }
+        seriesOut.flush();
+        for (Columns columns : open.values()) {
+            columns.flush();
+        }
+        batch.clear();
+        cache.invalidate();
+    }
+
+    private int seriesId(Series key) throws IOException {
+        Integer existing = seriesIds.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        seriesOut.writeByte(key.type() == null ? -1 : key.type().ordinal());
+        seriesOut.writeBoolean(key.parameter() != null);
+        if (key.parameter() != null) {
+            seriesOut.writeUTF(key.parameter());
+        }
+        seriesOut.writeBoolean(key.description() != null);
+        if (key.description() != null) {
+            seriesOut.writeUTF(key.description());
+        }
+        int id = series.length;
+        Series[] known = Arrays.copyOf(series, id + 1);
+        known[id] = key;
+        series = known;
+        seriesIds.put(key, id);
+        return id;
+    }
+
+    private void closeSegments() throws IOException {
+        // The series before the rows that refer to them
+        seriesOut.flush();
+        for (Columns columns : open.values()) {
+            columns.close();
+        }
+        open.clear();
+    }
+
+    /**
+     * Rolls up the raw segments of the hours that are over, and deletes the segments past their retention.
+     */
+    private void rollUp() throws IOException {
+        long now = Instant.now().getEpochSecond();
+        long over = floor(now - GRACE_SECONDS, Tier.RAW.span);
+        boolean expire = over > expiredAt;
+        if (!expire && (pending.isEmpty() || pending.first() >= over)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long rows = 0;
+            for (Iterator<Long> segments = pending.iterator(); segments.hasNext(); ) {
+                long start = segments.next();
+                if (start >= over) {
+                    break;
+                }
+                Columns columns = open.remove(start);
+                if (columns != null) {
+                    seriesOut.flush();
+                    columns.close();
+                }
+                rows += rollUp(start);
+                segments.remove();
+            }
+            if (rows > 0) {
+                LOGGER.log(DEBUG, "Spring Boot: rolled up {0} statistics into 1-minute and 1-hour aggregates", rows);
+            }
+            for (Tier tier : Tier.values()) {
+                long expired = now - retention.get(tier).toSeconds();
+                for (Path segment : segments(tier)) {
+                    long start = start(segment);
+                    if (start + tier.span <= expired && !(tier == Tier.RAW && pending.contains(start))) {
+                        Columns columns = tier == Tier.RAW ? open.remove(start) : null;
+                        if (columns != null) {
+                            columns.close();
+                        }
+                        delete(segment);
+                        rolledUp.remove(start);
+                        if (tier == Tier.RAW) {
+                            idRanges.remove(start);
+                        }
+                    }
+                }
+            }
+            expiredAt = over;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of rows rolled up.
+     */
+    private int rollUp(long start) throws IOException {
+        Path segment = tier(Tier.RAW).resolve(Long.toString(start));
+        Raw raw = Raw.map(segment);
+        int from = rolledUp.getOrDefault(start, 0);
+        Map<Key, Aggregate> minutes = new TreeMap<>();
+        for (int row = from; row < raw.rows(); row++) {
+            Key key = new Key(floor(Math.floorDiv(raw.doneAt().get(row), 1_000_000), 60), raw.series().get(row));
+            minutes.computeIfAbsent(key, k -> new Aggregate()).add(raw.durations().get(row));
+        }
+        Map<Key, Aggregate> hours = new TreeMap<>();
+        minutes.forEach((key, minute) -> hours.computeIfAbsent(new Key(start, key.series()), k -> new Aggregate()).add(minute));
+        write(Tier.MINUTE, start, minutes);
+        write(Tier.HOUR, start, hours);
+        Path written = segment.resolve(ROLLED_UP + ".tmp");
+        Files.writeString(written, Integer.toString(raw.rows()), StandardCharsets.UTF_8);
+        Files.move(written, segment.resolve(ROLLED_UP), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        rolledUp.put(start, raw.rows());
+        return raw.rows() - from;
+    }
+
+    private void write(Tier tier, long start, Map<Key, Aggregate> aggregates) throws IOException {
+        Path segment = tier(tier).resolve(Long.toString(floor(start, tier.span)));
+        try (Columns columns = new Columns(segment, ROLLUP_COLUMNS);
+             FileChannel histograms = FileChannel.open(segment.resolve(HISTOGRAMS), CREATE, WRITE)) {
+            // Cuts the histograms written after the last complete row
+            long end = columns.rows == 0 ? 0 : Rollup.map(segment).ends().get(columns.rows - 1);
+            histograms.truncate(end);
+            histograms.position(end);
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            for (Map.Entry<Key, Aggregate> entry : aggregates.entrySet()) {
+                Aggregate aggregate = entry.getValue();
+                if (buffer.capacity() < aggregate.histogram.getNeededByteBufferCapacity()) {
+                    buffer = ByteBuffer.allocate(aggregate.histogram.getNeededByteBufferCapacity());
+                }
+                buffer.clear();
+                aggregate.histogram.encodeIntoCompressedByteBuffer(buffer);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    end += histograms.write(buffer);
+                }
+                columns.putLong(0, entry.getKey().bucket());
+                columns.putInt(1, entry.getKey().series());
+                columns.putLong(2, aggregate.count);
+                columns.putLong(3, aggregate.sum);
+                columns.putLong(4, aggregate.min);
+                columns.putLong(5, aggregate.max);
+                columns.putLong(6, end);
+            }
+        }
+    }
+
+    private Path tier(Tier tier) {
+        return directory.resolve(tier.name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the segments of the tier, oldest first.
+     */
+    private List<Path> segments(Tier tier) throws IOException {
+        try (Stream<Path> segments = Files.list(tier(tier))) {
+            return segments.sorted(Comparator.comparingLong(StatisticsStore::start)).toList();
+        }
+    }
+
+    private static long start(Path segment) {
+        return Long.parseLong(segment.getFileName().toString());
+    }
+
+    private static long floor(long second, long width) {
+        return second - Math.floorMod(second, width);
+    }
+
+    private static void delete(Path segment) throws IOException {
+        try (Stream<Path> files = Files.list(segment)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(segment);
+    }
+
+    /**
+     * @return the number of rows written to every column, a row torn by a crash is not counted.
+     */
+    private static int rowCount(Path segment, String[] columns) throws IOException {
+        long rows = Integer.MAX_VALUE;
+        for (String column : columns) {
+            Path file = segment.resolve(column);
+            rows = Math.min(rows, Files.exists(file) ? Files.size(file) / width(column) : 0);
+        }
+        return (int) rows;
+    }
+
+    private static int width(String column) {
+        return SERIES.equals(column) ? Integer.BYTES : Long.BYTES;
+    }
+
+    private static ByteBuffer column(Path segment, String column, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.resolve(column), READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * The type, parameter and description shared by Statistics, stored once and referred to by their index.
+     */
+    private record Series(Type type, String parameter, String description) {
+    }
+
+    private record Key(long bucket, int series) implements Comparable<Key> {
+
+        @Override
+        public int compareTo(Key other) {
+            int byBucket = Long.compare(bucket, other.bucket);
+            return byBucket != 0 ? byBucket : Integer.compare(series, other.series);
+        }
+    }
+
+    private record IdRange(long min, long max) {
+
+        IdRange(long id) {
+            this(id, id);
+        }
+
+        IdRange add(IdRange other) {
+            return new IdRange(Math.min(min, other.min), Math.max(max, other.max));
+        }
+    }
+
+    private record Row(long id, Raw raw, int row) {
+
+        Statistics statistics(Series[] known) {
+            Statistics statistics = new Statistics();
+            statistics.setId(id);
+            long micros = raw.doneAt().get(row);
+            statistics.doneAt = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000L);
+            Series series = known[raw.series().get(row)];
+            statistics.type = series.type();
+            statistics.parameter = series.parameter();
+            statistics.description = series.description();
+            statistics.duration = Duration.ofNanos(raw.durations().get(row));
+            return statistics;
+        }
+    }
+
+    /**
+     * The memory-mapped columns of a raw segment: id, done_at in microseconds, series and duration in nanoseconds.
+     */
+    private record Raw(int rows, LongBuffer ids, LongBuffer doneAt, IntBuffer series, LongBuffer durations) {
+
+        static Raw map(Path segment) throws IOException {
+            int rows = rowCount(segment, RAW_COLUMNS);
+            return new Raw(rows,
+                column(segment, ID, rows * 8L).asLongBuffer(),
+                column(segment, DONE_AT, rows * 8L).asLongBuffer(),
+                column(segment, SERIES, rows * 4L).asIntBuffer(),
+                column(segment, DURATION, rows * 8L).asLongBuffer());
+        }
+    }
+
+    /**
+     * The memory-mapped columns of the aggregates of a segment, bucket in epoch seconds and durations in nanoseconds.
+     */
+    private record Rollup(int rows, LongBuffer buckets, IntBuffer series, LongBuffer counts, LongBuffer sums,
+                          LongBuffer mins, LongBuffer maxs, LongBuffer ends, ByteBuffer histograms) {
+
+        static Rollup map(Path segment) throws IOException {
+            int rows = rowCount(segment, ROLLUP_COLUMNS);
+            LongBuffer ends = column(segment, HISTOGRAM_END, rows * 8L).asLongBuffer();
+            return new Rollup(rows,
+                column(segment, BUCKET, rows * 8L).asLongBuffer(),
+                column(segment, SERIES, rows * 4L).asIntBuffer(),
+                column(segment, COUNT, rows * 8L).asLongBuffer(),
+                column(segment, SUM, rows * 8L).asLongBuffer(),
+                column(segment, MIN, rows * 8L).asLongBuffer(),
+                column(segment, MAX, rows * 8L).asLongBuffer(),
+                ends,
+                rows == 0 ? ByteBuffer.allocate(0) : column(segment, HISTOGRAMS, ends.get(rows - 1)));
+        }
+
+        Aggregate aggregate(int row) {
+            int start = row == 0 ? 0 : (int) ends.get(row - 1);
+            ByteBuffer histogram = histograms.slice(start, (int) ends.get(row) - start);
+            try {
+                return new Aggregate(Histogram.decodeFromCompressedByteBuffer(histogram, 0),
+                    counts.get(row), sums.get(row), mins.get(row), maxs.get(row));
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupted histogram in the statistics store", e);
+            }
+        }
+    }
+
+    /**
+     * Count, sum, min, max and histogram of durations in nanoseconds.
+     */
+    private static final class Aggregate {
+
+        private final Histogram histogram;
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        Aggregate() {
+            this(new Histogram(LOWEST_NANOS, 2 * LOWEST_NANOS, SIGNIFICANT_DIGITS), 0, 0, Long.MAX_VALUE, Long.MIN_VALUE);
+        }
+
+        Aggregate(Histogram histogram, long count, long sum, long min, long max) {
+            // Grows with the durations, and when the histograms of other minutes or hours are added to it
+            histogram.setAutoResize(true);
+            this.histogram = histogram;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        void add(long nanos) {
+            histogram.recordValue(Math.max(0, nanos));
+            count++;
+            sum += nanos;
+            min = Math.min(min, nanos);
+            max = Math.max(max, nanos);
+        }
+
+        Aggregate add(Aggregate other) {
+            histogram.add(other.histogram);
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            return this;
+        }
+
+        StatisticsSummary summary(Series series, long bucket) {
+            return new StatisticsSummary(series.type(), series.parameter(), series.description(), Instant.ofEpochSecond(bucket),
+                count, (double) sum / count / 1e6,
+                histogram.getValueAtPercentile(50) / 1e6,
+                histogram.getValueAtPercentile(90) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6,
+                max / 1e6);
+        }
+    }
+
+    /**
+     * The columns of a segment open for appending, through a buffer each.
+     */
+    private static final class Columns implements Closeable {
+
+        private final int rows;
+        private final FileChannel[] channels;
+        private final ByteBuffer[] buffers;
+
+        Columns(Path segment, String[] columns) throws IOException {
+            Files.createDirectories(segment);
+            // A row torn by a crash is cut from every column, so they stay aligned
+            rows = rowCount(segment, columns);
+            channels = new FileChannel[columns.length];
+            buffers = new ByteBuffer[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                long size = (long) rows * width(columns[i]);
+                channels[i] = FileChannel.open(segment.resolve(columns[i]), CREATE, WRITE);
+                channels[i].truncate(size);
+                channels[i].position(size);
+                buffers[i] = ByteBuffer.allocate(width(columns[i]) * BATCH_SIZE);
+            }
+        }
+
+        void putLong(int column, long value) throws IOException {
+            if (buffers[column].remaining() < Long.BYTES) {
+                write(column);
+            }
+            buffers[column].putLong(value);
+        }
+
+        void putInt(int column, int value) throws IOException {
+            if (buffers[column].remaining() < Integer.BYTES) {
+                write(column);
+            }
+            buffers[column].putInt(value);
+        }
+
+        void flush() throws IOException {
+            for (int i = 0; i < channels.length; i++) {
+                write(i);
+            }
+        }
+
+        private void write(int column) throws IOException {
+            ByteBuffer buffer = buffers[column].flip();
+            while (buffer.hasRemaining()) {
+                channels[column].write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+
+        /**
+         * Closes the files without writing the buffers, in which a row may be incomplete.
+         */
+        void discard() {
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Already failing
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import java.time.Instant;
+
+/**
+ * Aggregated durations, in milliseconds, of the Statistics sharing a type, parameter, description and time bucket.
+ */
+public record StatisticsSummary(Type type, String parameter, String description, Instant bucket,
+                                long count, double mean, double p50, double p90, double p99, double max) {
+
+    /**
+     * Column order of the summary query: type ordinal, parameter, description, bucket epoch second,
+     * count, mean, p50, p90, p99 and max.
+     */
+    static StatisticsSummary of(Object[] row) {
+        return new StatisticsSummary(
+            row[0] == null ? null : Type.values()[((Number) row[0]).intValue()],
+            (String) row[1],
+            (String) row[2],
+            Instant.ofEpochSecond(((Number) row[3]).longValue()),
+            ((Number) row[4]).longValue(),
+            ((Number) row[5]).doubleValue(),
+            ((Number) row[6]).doubleValue(),
+            ((Number) row[7]).doubleValue(),
+            ((Number) row[8]).doubleValue(),
+            ((Number) row[9]).doubleValue());
+    }
+
+    /**
+     * Builds the summary query of the given table, the time bucket being bound to the {@code bucket} parameter.
+     */
+    static String query(String table) {
+        return """
+            select type, parameter, description,
+                   extract(epoch from date_trunc(:bucket, done_at)) as bucket,
+                   count(*) as count,
+                   avg(duration) / 1e6 as mean,
+                   percentile_cont(0.5) within group (order by cast(duration as double precision)) / 1e6 as p50,
+                   percentile_cont(0.9) within group (order by cast(duration as double precision)) / 1e6 as p90,
+                   percentile_cont(0.99) within group (order by cast(duration as double precision)) / 1e6 as p99,
+                   max(duration) / 1e6 as max
+            from %s
+            where duration is not null
+            group by 1, 2, 3, 4
+            order by 4, 1, 2, 3
+            """.formatted(table);
+    }
+}
@@ -0,0 +1,33 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.System.Logger;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Runs the Tomcat request handlers on a virtual thread per request when {@code spring.threads.virtual.enabled} is set
+ * and the JVM supports it. Spring Boot 3.2 supports this property natively, this configuration backports it.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("spring.threads.virtual.enabled")
+class VirtualThreadsConfiguration {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> VirtualThreads.newExecutor("tomcat-virtual-").ifPresentOrElse(
+            executor -> {
+                LOGGER.log(INFO, "Spring Boot: running requests on virtual threads");
+                protocolHandler.setExecutor(executor);
+            },
+            () -> LOGGER.log(WARNING, "Spring Boot: virtual threads are not supported by this JVM, running requests on platform threads"));
+    }
+}
@@ -0,0 +1,49 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import org.springframework.stereotype.Component;
+
+import java.lang.System.Logger;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * The workloads of {@code /workload/{name}}: the built-in {@link Workloads}, and the {@link Workload} beans.
+ * To add one, declare a bean implementing {@link Workload}, and add its type at the end of {@link Type}.
+ */
+@Component
+public class WorkloadRegistry {
+
+    private static final Logger LOGGER = System.getLogger(lookup().lookupClass().getName());
+
+    private final Map<String, Workload> workloads = new TreeMap<>();
+
+    WorkloadRegistry(List<Workload> beans) {
+        for (Workload workload : Workloads.values()) {
+            register(workload);
+        }
+        beans.forEach(this::register);
+        LOGGER.log(INFO, "Spring Boot: workloads {0}", workloads.keySet());
+    }
+
+    private void register(Workload workload) {
+        Workload previous = workloads.putIfAbsent(workload.name().toLowerCase(Locale.ROOT), workload);
+        if (previous != null) {
+            throw new IllegalStateException("Two workloads are named " + workload.name() + ": " + previous + " and " + workload);
+        }
+    }
+
+    Optional<Workload> find(String name) {
+        return Optional.ofNullable(workloads.get(name.toLowerCase(Locale.ROOT)));
+    }
+
+    Set<String> names() {
+        return workloads.keySet();
+    }
+}
@@ -0,0 +1,73 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CheckpointRestoreTest {
+
+    private final AtomicInteger open = new AtomicInteger();
+    private HikariDataSource dataSource;
+
+    @BeforeEach
+    void pool() throws Exception {
+        DataSource connections = mock(DataSource.class);
+        when(connections.getConnection()).thenAnswer(invocation -> connection());
+        dataSource = new HikariDataSource();
+        dataSource.setDataSource(connections);
+        dataSource.setMinimumIdle(2);
+        dataSource.setMaximumPoolSize(4);
+        dataSource.getConnection().close();
+    }
+
+    @AfterEach
+    void close() {
+        dataSource.close();
+    }
+
+    @Test
+    void testCheckpointRestore() throws Exception {
+        CheckpointRestore checkpointRestore = new CheckpointRestore(mock(ApplicationContext.class), dataSource);
+
+        checkpointRestore.beforeCheckpoint(null);
+        assertThat(dataSource.getHikariConfigMXBean().getMinimumIdle()).isZero();
+        assertThat(dataSource.getHikariPoolMXBean().getTotalConnections()).isZero();
+        awaitClosed();
+
+        checkpointRestore.afterRestore(null);
+        assertThat(dataSource.getHikariConfigMXBean().getMinimumIdle()).isEqualTo(2);
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        assertThat(open.get()).isPositive();
+    }
+
+    private void awaitClosed() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (open.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(open.get()).isZero();
+    }
+
+    private Connection connection() throws Exception {
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        doAnswer(invocation -> open.decrementAndGet()).when(connection).close();
+        open.incrementAndGet();
+        return connection;
+    }
+}
@@ -0,0 +1,70 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class ConcurrencyLimiterTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testRejectsOverTheLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+
+        String response = limiter.limit(() -> limiter.limit(() -> "accepted", retryAfter -> "retry in " + retryAfter), retryAfter -> "rejected");
+        assertThat(response).isEqualTo("retry in 1");
+        assertThat(limiter.limit(() -> "accepted", retryAfter -> "rejected")).isEqualTo("accepted");
+        assertThat(registry.get("workload.limiter.rejected").functionCounter().count()).isEqualTo(1.0);
+        assertThat(registry.get("workload.limiter.limit").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testHoldsThePermitUntilTheRequestCompletes() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> response = CompletableFuture.supplyAsync(() -> limiter.limit(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            return "done";
+        }, retryAfter -> "rejected"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(limiter.limit(() -> "accepted", retryAfter -> "rejected")).isEqualTo("rejected");
+
+        release.countDown();
+        assertThat(response.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(limiter.limit(() -> "accepted", retryAfter -> "rejected")).isEqualTo("accepted");
+    }
+
+    @Test
+    void testReleasesThePermitWhenTheRequestThrows() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, true, 1, 1, 1, 0);
+
+        assertThatIllegalStateException().isThrownBy(() -> limiter.limit(() -> {
+            throw new IllegalStateException("failed");
+        }, retryAfter -> "rejected"));
+        assertThat(limiter.limit(() -> "accepted", retryAfter -> "rejected")).isEqualTo("accepted");
+    }
+
+    @Test
+    void testDisabled() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(registry, false, 1, 1, 1, 0);
+
+        String response = limiter.limit(() -> limiter.limit(() -> "accepted", retryAfter -> "rejected"), retryAfter -> "rejected");
+        assertThat(response).isEqualTo("accepted");
+        assertThat(registry.get("workload.limiter.rejected").functionCounter().count()).isZero();
+    }
+}
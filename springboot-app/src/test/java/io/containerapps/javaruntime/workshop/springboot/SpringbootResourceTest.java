@@ -3,12 +3,21 @@ package io.containerapps.javaruntime.workshop.springboot;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -18,6 +27,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
     "spring.datasource.username=postgres",
     "spring.datasource.password=password"
 })
+// Exports the metrics to Prometheus, which tests disable by default
+@AutoConfigureObservability
 class SpringbootResourceTest {
 
     private static String basePath = "http://localhost:8803/springboot";
@@ -26,6 +37,9 @@ class SpringbootResourceTest {
     private TestRestTemplate restTemplate;
 // end::adocHeader[]
 
+    @Autowired
+    private StatisticsRepository repository;
+
 // tag::adocTestHello[]
     @Test
     public void testHelloEndpoint() {
@@ -109,6 +123,65 @@ class SpringbootResourceTest {
     }
 // end::adocTestMemory[]
 
+    @Test
+    public void testMemoryWithStrategyEndpoint() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/memory?bites=1&strategy=direct", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody())
+            .startsWith("Spring Boot: Memory consumption is done with 1 bites using direct")
+            .endsWith("nano-seconds.");
+    }
+
+    @Test
+    public void testMemoryWithInvalidStrategyEndpoint() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/memory?bites=1&strategy=unknown", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testCpuParallelEndpoint() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/cpu?iterations=10&kernel=hash&parallelism=4&db=true", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody())
+            .startsWith("Spring Boot: CPU consumption is done with 10 iterations using hash over 4 slices")
+            .endsWith("The result is persisted in the database.");
+    }
+
+    @Test
+    public void testCpuWithInvalidParallelismEndpoint() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/cpu?iterations=1&kernel=sum&parallelism=0", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testWorkloadEndpoint() {
+        for (String name : List.of("json", "regex", "sort", "hash", "gzip", "file")) {
+            ResponseEntity<String> response = this.restTemplate.
+                getForEntity(basePath + "/workload/" + name + "?size=1&db=true", String.class);
+
+            assertEquals(response.getStatusCode(), HttpStatus.OK);
+            assertThat(response.getBody())
+                .startsWith("Spring Boot: Workload " + name + " is done with 1 units")
+                .endsWith("The result is persisted in the database.");
+        }
+    }
+
+    @Test
+    public void testUnknownWorkloadEndpoint() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/workload/unknown", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.NOT_FOUND);
+    }
+
 // tag::adocTestStats[]
     @Test
     public void testStats() {
@@ -118,4 +191,168 @@ class SpringbootResourceTest {
         assertEquals(response.getStatusCode(), HttpStatus.OK);
     }
 // end::adocTestStats[]
+
+    @Test
+    public void testStatsSummary() {
+        Instant minute = Instant.parse("2020-01-01T00:00:10Z");
+        List<Statistics> seeded = List.of(statistics("summary", 10), statistics("summary", 20), statistics("summary", 30),
+            statistics("summary", 40), statistics("summary", 60));
+        seeded.forEach(statistics -> statistics.doneAt = minute);
+        seeded.subList(3, 5).forEach(statistics -> statistics.doneAt = minute.plusSeconds(60));
+        repository.saveAll(seeded);
+
+        ResponseEntity<StatisticsSummary[]> response = this.restTemplate.
+            getForEntity(basePath + "/stats/summary?bucket=minute", StatisticsSummary[].class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        List<StatisticsSummary> minutes = Arrays.stream(response.getBody()).filter(summary -> "summary".equals(summary.parameter())).toList();
+        assertThat(minutes).extracting(StatisticsSummary::bucket).containsExactly(Instant.parse("2020-01-01T00:00:00Z"), Instant.parse("2020-01-01T00:01:00Z"));
+        assertThat(minutes).extracting(StatisticsSummary::count).containsExactly(3L, 2L);
+        assertThat(minutes).extracting(StatisticsSummary::mean).containsExactly(20.0, 50.0);
+        assertThat(minutes).extracting(StatisticsSummary::p50).containsExactly(20.0, 50.0);
+        assertThat(minutes).extracting(StatisticsSummary::p90).containsExactly(28.0, 58.0);
+        assertThat(minutes).extracting(StatisticsSummary::max).containsExactly(30.0, 60.0);
+
+        response = this.restTemplate.
+            getForEntity(basePath + "/stats/summary?bucket=hour", StatisticsSummary[].class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        List<StatisticsSummary> hours = Arrays.stream(response.getBody()).filter(summary -> "summary".equals(summary.parameter())).toList();
+        assertThat(hours).extracting(StatisticsSummary::count).containsExactly(5L);
+        assertThat(hours).extracting(StatisticsSummary::p50).containsExactly(30.0);
+        assertThat(hours).extracting(StatisticsSummary::max).containsExactly(60.0);
+    }
+
+    @Test
+    public void testStatsSummaryWithInvalidBucket() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/stats/summary?bucket=century", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testStatsSummaryWithoutDuration() {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = "no-duration";
+        repository.save(statistics);
+
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/stats/summary?bucket=minute", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody()).doesNotContain("no-duration");
+    }
+
+    @Test
+    public void testStatsPage() {
+        List<Statistics> seeded = List.of(statistics("page-1", 10), statistics("page-2", 20), statistics("page-3", 30));
+        repository.saveAll(seeded);
+
+        ResponseEntity<Statistics[]> response = this.restTemplate.
+            getForEntity(basePath + "/stats?after=" + seeded.get(0).getId() + "&limit=2", Statistics[].class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody()).extracting(Statistics::getId).containsExactly(seeded.get(1).getId(), seeded.get(2).getId());
+        assertThat(response.getBody()).extracting(statistics -> statistics.parameter).containsExactly("page-2", "page-3");
+
+        response = this.restTemplate.
+            getForEntity(basePath + "/stats?after=" + seeded.get(2).getId() + "&limit=2", Statistics[].class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody()).isEmpty();
+    }
+
+    @Test
+    public void testStatsStream() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/stats/stream?format=json", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody()).startsWith("[").endsWith("]");
+    }
+
+    @Test
+    public void testWriterMetrics() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/stats/writer", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody()).contains("queueDepth");
+    }
+
+    @Test
+    public void testPrometheusMetrics() {
+        this.restTemplate.getForEntity(basePath, String.class);
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity("http://localhost:8803/actuator/prometheus", String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody())
+            .contains("workload_requests_seconds_count{db=\"false\",endpoint=\"hello\",framework=\"springboot\",size=\"none\",}")
+            .contains("hikaricp_connections_active");
+    }
+
+    @Test
+    public void testStatsNotModified() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/stats", String.class);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(response.getHeaders().getETag());
+        HttpEntity<Void> request = new HttpEntity<>(headers);
+        response = this.restTemplate.exchange(basePath + "/stats", HttpMethod.GET, request, String.class);
+        assertEquals(response.getStatusCode(), HttpStatus.NOT_MODIFIED);
+
+        this.restTemplate.getForEntity(basePath + "/cpu?iterations=1&db=true", String.class);
+        response = this.restTemplate.exchange(basePath + "/stats", HttpMethod.GET, request, String.class);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+    }
+
+    @Test
+    public void testTimings() {
+        ResponseEntity<String> response = this.restTemplate.
+            getForEntity(basePath + "/cpu?iterations=1", String.class);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst("Server-Timing")).contains("compute;dur=");
+        assertThat(response.getBody()).contains("(compute ");
+
+        response = this.restTemplate.
+            getForEntity(basePath + "/timings", String.class);
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody()).contains("\"cpu\"").contains("p99Millis");
+    }
+
+    @Test
+    public void testLoadStats() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/x-ndjson");
+        ResponseEntity<String> response = this.restTemplate.exchange(basePath + "/stats/batch", HttpMethod.POST,
+            new HttpEntity<>("{\"type\":\"CPU\",\"parameter\":\"10\",\"duration\":\"PT0.2S\",\"description\":\"replay\"}\n{\"type\":\"MEMORY\",\"parameter\":\"1\",\"duration\":\"PT0.1S\",\"description\":\"replay\"}\n", headers), String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.OK);
+        assertThat(response.getBody()).contains("\"inserted\":2");
+
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        response = this.restTemplate.exchange(basePath + "/stats/batch", HttpMethod.POST,
+            new HttpEntity<>("[{\"type\":\"CPU\",\"parameter\":\"1\"}, 42]", headers), String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+
+        response = this.restTemplate.exchange(basePath + "/stats/batch", HttpMethod.POST,
+            new HttpEntity<>("[{\"type\":\"CPU\",\"parameter\":\"1\"}, {\"type\":\"CPU\",\"doneAt\":null}]", headers), String.class);
+
+        assertEquals(response.getStatusCode(), HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).contains("invalid statistics #2");
+    }
+
+    private static Statistics statistics(String parameter, long millis) {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = parameter;
+        statistics.duration = Duration.ofMillis(millis);
+        return statistics;
+    }
 }
@@ -0,0 +1,117 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class StatisticsCacheTest {
+
+    private final byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<byte[]> loader = () -> {
+        loads.incrementAndGet();
+        return body;
+    };
+
+    @Test
+    void testCachedUntilInvalidated() {
+        StatisticsCache cache = new StatisticsCache(100, Duration.ofMinutes(1), Duration.ZERO);
+
+        StatisticsCache.Page page = cache.page(0, 10, loader);
+        assertThat(page.etag()).isEqualTo(cache.etag());
+        assertThat(cache.page(0, 10, loader)).isSameAs(page);
+        assertThat(loads).hasValue(1);
+
+        cache.invalidate();
+        assertThat(cache.etag()).isNotEqualTo(page.etag());
+        assertThat(cache.page(0, 10, loader).etag()).isEqualTo(cache.etag());
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testCoalescing() throws Exception {
+        StatisticsCache cache = new StatisticsCache(0, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<byte[]> slowLoader = () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loader.get();
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<StatisticsCache.Page>> pages = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                pages.add(executor.submit(() -> cache.page(0, 10, slowLoader)));
+            }
+            release.countDown();
+            for (Future<StatisticsCache.Page> page : pages) {
+                assertThat(page.get().body()).isEqualTo(body);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(loads).hasValue(1);
+
+        StatisticsCache uncoalesced = new StatisticsCache(0, Duration.ofMinutes(1), Duration.ZERO);
+        uncoalesced.page(0, 10, loader);
+        uncoalesced.page(0, 10, loader);
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void testCoalescedPageKeepsItsEtag() {
+        StatisticsCache cache = new StatisticsCache(0, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        StatisticsCache.Page loaded = cache.page(0, 10, loader);
+
+        // Still shared once a statistic is persisted, within the coalescing window, with the ETag of its version
+        cache.invalidate();
+        StatisticsCache.Page shared = cache.page(0, 10, loader);
+        assertThat(loads).hasValue(1);
+        assertThat(shared.version()).isZero();
+        assertThat(shared.etag()).isEqualTo(loaded.etag());
+        assertThat(cache.etag()).isNotEqualTo(shared.etag());
+
+        // Another page is loaded at the current version
+        assertThat(cache.page(10, 10, loader).etag()).isEqualTo(cache.etag());
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testFailedLoadIsNotShared() {
+        StatisticsCache cache = new StatisticsCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        assertThatIllegalStateException().isThrownBy(() -> cache.page(0, 10, () -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertThat(cache.page(0, 10, loader).body()).isEqualTo(body);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void testMaxAge() throws InterruptedException {
+        StatisticsCache cache = new StatisticsCache(100, Duration.ofMillis(10), Duration.ZERO);
+        String etag = cache.page(0, 10, loader).etag();
+
+        Thread.sleep(20);
+        assertThat(cache.etag()).isNotEqualTo(etag);
+        cache.page(0, 10, loader);
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -0,0 +1,156 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatisticsStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRollUp() {
+        Instant now = Instant.now();
+        Instant hoursAgo = now.minus(Duration.ofHours(3));
+        StatisticsStore store = statisticsStore(new StatisticsCache(0, Duration.ofMinutes(1), Duration.ZERO));
+        store.append(statistics(1L, hoursAgo, Duration.ofMillis(10)));
+        store.append(statistics(2L, now, Duration.ofMillis(30)));
+        store.shutdown();
+
+        // Opened again, the hour of the first one is rolled up, and rolled up again with the one loaded into it
+        store = statisticsStore(new StatisticsCache(0, Duration.ofMinutes(1), Duration.ZERO));
+        store.append(statistics(3L, hoursAgo, Duration.ofMillis(20)));
+        store.shutdown();
+
+        store = statisticsStore(new StatisticsCache(0, Duration.ofMinutes(1), Duration.ZERO));
+        assertThat(ids(store.page(0, 10))).containsExactly(1L, 2L, 3L);
+        assertThat(ids(store.page(1, 1))).containsExactly(2L);
+        List<StatisticsSummary> minutes = store.summary("minute");
+        assertThat(minutes).extracting(StatisticsSummary::count).containsExactly(2L, 1L);
+        assertThat(minutes.get(0).mean()).isEqualTo(15.0);
+        assertThat(minutes.get(0).max()).isEqualTo(20.0);
+        assertThat(minutes.get(1).max()).isEqualTo(30.0);
+        assertThat(store.summary("hour")).extracting(StatisticsSummary::count).containsExactly(2L, 1L);
+        store.shutdown();
+    }
+
+    @Test
+    void testPageAcrossSegments() throws IOException {
+        Instant now = Instant.now();
+        Instant threeHoursAgo = now.minus(Duration.ofHours(3));
+        Instant fiveHoursAgo = now.minus(Duration.ofHours(5));
+        StatisticsStore store = statisticsStore(new StatisticsCache(0, Duration.ofMinutes(1), Duration.ZERO));
+        store.append(statistics(1L, threeHoursAgo, Duration.ofMillis(10)));
+        store.append(statistics(2L, threeHoursAgo, Duration.ofMillis(10)));
+        store.append(statistics(3L, now, Duration.ofMillis(10)));
+        store.append(statistics(4L, now, Duration.ofMillis(10)));
+        // A batch load into past hours, with higher ids
+        store.append(statistics(5L, fiveHoursAgo, Duration.ofMillis(10)));
+        store.append(statistics(6L, fiveHoursAgo, Duration.ofMillis(10)));
+        store.append(statistics(7L, threeHoursAgo, Duration.ofMillis(10)));
+        store.shutdown();
+
+        store = statisticsStore(new StatisticsCache(0, Duration.ofMinutes(1), Duration.ZERO));
+        assertThat(ids(store.page(0, 3))).containsExactly(1L, 2L, 3L);
+        assertThat(ids(store.page(3, 3))).containsExactly(4L, 5L, 6L);
+        assertThat(ids(store.page(6, 3))).containsExactly(7L);
+        assertThat(ids(store.page(7, 3))).isEmpty();
+
+        // The segments of the hours with ids above the page are not read
+        Files.delete(segment(now).resolve("id.col"));
+        Files.delete(segment(fiveHoursAgo).resolve("id.col"));
+        assertThat(ids(store.page(0, 2))).containsExactly(1L, 2L);
+        store.shutdown();
+    }
+
+    @Test
+    void testShutdownLeavesTheQueueToABusyDrainer() throws Exception {
+        BlockingCache cache = new BlockingCache();
+        StatisticsStore store = statisticsStore(cache);
+        Instant now = Instant.now();
+        store.append(statistics(1L, now, Duration.ofMillis(10)));
+        cache.awaitInvalidating();
+        store.append(statistics(2L, now, Duration.ofMillis(20)));
+
+        // Waits for the drainer, then returns without appending the second one itself
+        store.shutdown();
+        assertThat(ids(store.page(0, 10))).containsExactly(1L);
+
+        cache.release();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (store.page(0, 10).size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(ids(store.page(0, 10))).containsExactly(1L, 2L);
+    }
+
+    private StatisticsStore statisticsStore(StatisticsCache cache) {
+        return new StatisticsStore(new SimpleMeterRegistry(), cache, true, directory.toString(), 100,
+            Duration.ofDays(2), Duration.ofDays(30), Duration.ofDays(365));
+    }
+
+    private Path segment(Instant doneAt) {
+        long second = doneAt.getEpochSecond();
+        return directory.resolve("raw").resolve(Long.toString(second - Math.floorMod(second, 3_600)));
+    }
+
+    private static List<Long> ids(List<Statistics> page) {
+        return page.stream().map(Statistics::getId).toList();
+    }
+
+    private static Statistics statistics(Long id, Instant doneAt, Duration duration) {
+        Statistics statistics = new Statistics();
+        statistics.setId(id);
+        statistics.doneAt = doneAt;
+        statistics.type = Type.CPU;
+        statistics.parameter = "10";
+        statistics.duration = duration;
+        return statistics;
+    }
+
+    /**
+     * Holds the drainer in its first batch, once the rows are written, until released.
+     */
+    static class BlockingCache extends StatisticsCache {
+
+        private final CountDownLatch invalidating = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        BlockingCache() {
+            super(0, Duration.ofMinutes(1), Duration.ZERO);
+        }
+
+        void awaitInvalidating() throws InterruptedException {
+            assertThat(invalidating.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void invalidate() {
+            if (invalidating.getCount() > 0) {
+                invalidating.countDown();
+                try {
+                    released.await(20, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.invalidate();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package io.containerapps.javaruntime.workshop.springboot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StatisticsWriterTest {
+
+    private final StatisticsRepository repository = mock(StatisticsRepository.class);
+    private final Recording recording = new Recording();
+    private final StatisticsCache cache = new StatisticsCache(100, Duration.ofMinutes(1), Duration.ZERO);
+    private final StatisticsStore store = new StatisticsStore(new SimpleMeterRegistry(), cache, false, "target/statistics-store",
+        1, Duration.ofDays(2), Duration.ofDays(30), Duration.ofDays(365));
+
+    @BeforeEach
+    void record() {
+        when(repository.save(any())).thenAnswer(invocation -> recording.save(invocation.getArgument(0)));
+        when(repository.saveAll(anyIterable())).thenAnswer(invocation -> recording.saveAll(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void release() {
+        recording.release();
+    }
+
+    @Test
+    void testBatches() {
+        StatisticsWriter writer = writer(100, 10, Duration.ofSeconds(1), StatisticsWriter.Overflow.SYNC);
+        for (int i = 0; i < 25; i++) {
+            assertThat(writer.write(statistics())).isEqualTo(StatisticsWriter.Outcome.QUEUED);
+        }
+        writer.shutdown();
+
+        assertThat(recording.batchSizes()).containsExactly(10, 10, 5);
+        assertThat(recording.single).isEmpty();
+        assertThat(writer.metrics().written()).isEqualTo(25L);
+        assertThat(writer.metrics().flushes()).isEqualTo(3L);
+    }
+
+    @Test
+    void testBlockWaitsForRoom() throws Exception {
+        StatisticsWriter writer = writer(1, 1, Duration.ofMillis(50), StatisticsWriter.Overflow.BLOCK);
+        recording.hold();
+        writer.write(statistics());
+        recording.awaitFlushing();
+        writer.write(statistics());
+
+        CompletableFuture<StatisticsWriter.Outcome> blocked = CompletableFuture.supplyAsync(() -> writer.write(statistics()));
+        Thread.sleep(200);
+        assertThat(blocked.isDone()).isFalse();
+
+        recording.release();
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo(StatisticsWriter.Outcome.QUEUED);
+        writer.shutdown();
+        assertThat(recording.batchSizes()).containsExactly(1, 1, 1);
+        assertThat(writer.metrics().dropped()).isZero();
+    }
+
+    @Test
+    void testBlockStopsWaitingOnShutdown() throws Exception {
+        StatisticsWriter writer = writer(1, 1, Duration.ofMillis(50), StatisticsWriter.Overflow.BLOCK);
+        recording.hold();
+        writer.write(statistics());
+        recording.awaitFlushing();
+        writer.write(statistics());
+        CompletableFuture<StatisticsWriter.Outcome> blocked = CompletableFuture.supplyAsync(() -> writer.write(statistics()));
+        Thread.sleep(200);
+
+        // The drainer is stuck in its first batch, so the shutdown flushes the queue itself
+        writer.shutdown();
+
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo(StatisticsWriter.Outcome.PERSISTED);
+        assertThat(recording.batchSizes()).containsExactly(1);
+        assertThat(recording.single).hasSize(1);
+        recording.release();
+        recording.awaitBatches(2);
+        assertThat(recording.batchSizes()).containsExactly(1, 1);
+    }
+
+    @Test
+    void testDropWhenFull() {
+        StatisticsWriter writer = writer(1, 1, Duration.ofMillis(50), StatisticsWriter.Overflow.DROP);
+        recording.hold();
+        writer.write(statistics());
+        recording.awaitFlushing();
+        assertThat(writer.write(statistics())).isEqualTo(StatisticsWriter.Outcome.QUEUED);
+
+        assertThat(writer.write(statistics())).isEqualTo(StatisticsWriter.Outcome.DROPPED);
+        assertThat(writer.metrics().dropped()).isEqualTo(1L);
+        assertThat(recording.single).isEmpty();
+
+        recording.release();
+        writer.shutdown();
+        assertThat(recording.batchSizes()).containsExactly(1, 1);
+    }
+
+    @Test
+    void testSyncWhenFull() {
+        StatisticsWriter writer = writer(1, 1, Duration.ofMillis(50), StatisticsWriter.Overflow.SYNC);
+        recording.hold();
+        writer.write(statistics());
+        recording.awaitFlushing();
+        writer.write(statistics());
+
+        Statistics overflowing = statistics();
+        assertThat(writer.write(overflowing)).isEqualTo(StatisticsWriter.Outcome.PERSISTED);
+        assertThat(recording.single).containsExactly(overflowing);
+
+        recording.release();
+        writer.shutdown();
+        assertThat(recording.batchSizes()).containsExactly(1, 1);
+        assertThat(writer.metrics().written()).isEqualTo(3L);
+    }
+
+    @Test
+    void testWriteAfterShutdown() {
+        StatisticsWriter writer = writer(100, 10, Duration.ofMillis(50), StatisticsWriter.Overflow.DROP);
+        writer.shutdown();
+
+        Statistics late = statistics();
+        assertThat(writer.write(late)).isEqualTo(StatisticsWriter.Outcome.PERSISTED);
+        assertThat(recording.single).containsExactly(late);
+        assertThat(writer.metrics().queueDepth()).isZero();
+    }
+
+    private StatisticsWriter writer(int queueCapacity, int batchSize, Duration flushInterval, StatisticsWriter.Overflow overflow) {
+        return new StatisticsWriter(repository, cache, store, true, queueCapacity, batchSize, flushInterval, overflow);
+    }
+
+    private static Statistics statistics() {
+        Statistics statistics = new Statistics();
+        statistics.type = Type.CPU;
+        statistics.parameter = "writer";
+        statistics.duration = Duration.ofMillis(1);
+        return statistics;
+    }
+
+    /**
+     * Records the statistics instead of inserting them, and can hold the first batch until released.
+     */
+    static class Recording {
+
+        final List<List<Statistics>> batches = new CopyOnWriteArrayList<>();
+        final List<Statistics> single = new CopyOnWriteArrayList<>();
+        private final CountDownLatch flushing = new CountDownLatch(1);
+        private volatile CountDownLatch held = new CountDownLatch(0);
+
+        void hold() {
+            held = new CountDownLatch(1);
+        }
+
+        void release() {
+            held.countDown();
+        }
+
+        void awaitFlushing() {
+            try {
+                assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException ie) {
+                throw new IllegalStateException(ie);
+            }
+        }
+
+        void awaitBatches(int count) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (batches.size() < count && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+
+        List<Integer> batchSizes() {
+            return batches.stream().map(List::size).toList();
+        }
+
+        Statistics save(Statistics statistics) {
+            single.add(statistics);
+            return statistics;
+        }
+
+        Iterable<Statistics> saveAll(Iterable<Statistics> statistics) {
+            if (flushing.getCount() > 0) {
+                flushing.countDown();
+                try {
+                    held.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            List<Statistics> batch = new ArrayList<>();
+            statistics.forEach(batch::add);
+            batches.add(batch);
+            return batch;
+        }
+    }
+}